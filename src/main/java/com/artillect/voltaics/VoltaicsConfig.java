@@ -0,0 +1,71 @@
+package com.artillect.voltaics;
+
+import net.minecraftforge.common.config.Config;
+import net.minecraftforge.common.config.ConfigManager;
+import net.minecraftforge.fml.client.event.ConfigChangedEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+
+@Config(modid = Voltaics.modId)
+public class VoltaicsConfig {
+
+	@Config.Comment({"Solve separate conduit networks on several threads at once.",
+		"Only the read-only part of a network tick runs off the server thread, power is still moved on the server thread in a fixed order.",
+		"Machines from other mods touching a network must be safe to simulate from another thread."})
+	public static boolean parallelNetworks = false;
+
+	@Config.Comment({"The number of threads used to solve networks in parallel, or 0 to use one less than the number of cores.",
+		"Changes take effect after a restart."})
+	@Config.RangeInt(min = 0, max = 64)
+	public static int parallelThreads = 0;
+
+	@Config.Comment("The least number of active networks in a world before they are solved in parallel.")
+	@Config.RangeInt(min = 2)
+	public static int parallelThreshold = 8;
+
+	@Config.Comment({"The power lost for every low voltage conduit between a producer and a consumer, in thousandths of the power delivered.",
+		"Applies to a network the next time something connected to it changes."})
+	@Config.RangeInt(min = 0, max = 100)
+	public static int conduitLoss = 2;
+
+	@Config.Comment("The temperature machines cool down or warm up to when nothing is heating them.")
+	public static int ambientTemperature = 70;
+
+	@Config.Comment({"The heat a machine loses to its surroundings every tick for each degree above the ambient temperature, in thousandths of its conductivity.",
+		"Machines below the ambient temperature warm up at the same rate."})
+	@Config.RangeInt(min = 0, max = 1000)
+	public static int ambientHeatLoss = 2;
+
+	@Config.Comment({"How far from the ambient temperature a machine has to be, in degrees, for heat around it to keep being simulated.",
+		"Regions where every machine is within this range stop being stepped until something heats them again."})
+	@Config.RangeInt(min = 0)
+	public static int heatActiveThreshold = 2;
+
+	@Config.Comment({"The number of ticks between heat steps. Each step covers all of the ticks since the last one, so heat moves at the same speed.",
+		"Higher values make heat cheaper to simulate but less smooth."})
+	@Config.RangeInt(min = 1, max = 20)
+	public static int heatStepInterval = 4;
+
+	@Config.Comment("Whether machines that reach their melting point are destroyed and turned into magma.")
+	public static boolean machinesMelt = true;
+
+	@Config.Comment({"The number of ticks between updates of the power and temperature readouts sent to a player holding a voltmeter or thermometer.",
+		"Readouts are only sent to players holding one of those, so traffic does not grow with how much power is flowing.",
+		"The client extrapolates readouts between updates for up to twice this many ticks, so it should match on the client and the server."})
+	@Config.RangeInt(min = 1, max = 100)
+	public static int readoutSyncInterval = 20;
+
+	@Config.Comment("How close a machine has to be, in blocks, for its readouts to be sent to a player holding a voltmeter or thermometer.")
+	@Config.RangeInt(min = 1, max = 64)
+	public static int readoutSyncRange = 8;
+
+	@Mod.EventBusSubscriber
+	public static class ChangeHandler {
+		@SubscribeEvent
+		public static void onConfigChanged(ConfigChangedEvent.OnConfigChangedEvent event){
+			if (event.getModID().equals(Voltaics.modId)){
+				ConfigManager.sync(Voltaics.modId, Config.Type.INSTANCE);
+			}
+		}
+	}
+}
@@ -1,6 +1,5 @@
 package com.artillect.voltaics.block;
 
-import com.artillect.voltaics.capability.EnergyCapabilities;
 import com.artillect.voltaics.tileentity.TileEntityLowVoltageConduit;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.properties.IProperty;
@@ -70,71 +69,11 @@ public class BlockLowVoltageConduit extends BlockTEBase implements IModeledBlock
 		return new AxisAlignedBB(x1,y1,z1,x2,y2,z2);
 	}
     
-   
-	@Override
-	public void onNeighborChange(IBlockAccess world, BlockPos pos, BlockPos neighbor){
-		if (world.getTileEntity(pos) != null){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos)).updateNeighbors(world);
-		}
-	}
-	
-	/*@Override
-	public void neighborChanged(IBlockState state, World world, BlockPos pos, Block block){
-		if (world.getTileEntity(pos) != null){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos)).updateNeighbors(world);
-			world.notifyBlockUpdate(pos, state, world.getBlockState(pos), 3);
-		}
-	}*/
-	
-	/*@Override
-	public void onBlockAdded(World world, BlockPos pos, IBlockState state){
-		if (world.getTileEntity(pos) != null){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos)).updateNeighbors(world);
-		}
-	}*/
-   
 
 	@Override
 	public void onBlockPlacedBy(World world, BlockPos pos, IBlockState state, EntityLivingBase placer, ItemStack stack){
-		if (world.getTileEntity(pos.up()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.up())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.down()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.down())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.north()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.north())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.south()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.south())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.west()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.west())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.east()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.east())).updateNeighbors(world);
-		}
-	}
-	
-	@Override
-	public void onBlockHarvested(World world, BlockPos pos, IBlockState state, EntityPlayer player){
-		if (world.getTileEntity(pos.up()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.up())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.down()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.down())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.north()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.north())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.south()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.south())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.west()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.west())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.east()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.east())).updateNeighbors(world);
+		if (!world.isRemote && world.getTileEntity(pos) instanceof TileEntityLowVoltageConduit){
+			((TileEntityLowVoltageConduit)world.getTileEntity(pos)).updateNeighbors();
 		}
 	}
 	
@@ -146,22 +85,19 @@ public class BlockLowVoltageConduit extends BlockTEBase implements IModeledBlock
 
 	@Override
     public IBlockState getActualState(IBlockState state, IBlockAccess worldIn, BlockPos pos) {
-        return state
-        		.withProperty(NORTH, Boolean.valueOf(this.canConnectTo(worldIn, pos.north(), EnumFacing.NORTH)))
-        		.withProperty(SOUTH, Boolean.valueOf(this.canConnectTo(worldIn, pos.south(), EnumFacing.SOUTH)))
-                .withProperty(WEST,  Boolean.valueOf(this.canConnectTo(worldIn, pos.west(), EnumFacing.WEST)))
-                .withProperty(EAST,  Boolean.valueOf(this.canConnectTo(worldIn, pos.east(), EnumFacing.EAST)))
-                .withProperty(UP,  Boolean.valueOf(this.canConnectTo(worldIn, pos.up(), EnumFacing.UP)))
-                .withProperty(DOWN,  Boolean.valueOf(this.canConnectTo(worldIn, pos.down(), EnumFacing.DOWN)));
-    }
-    
-    public boolean canConnectTo(IBlockAccess worldIn, BlockPos pos, EnumFacing direction)
-    {
         TileEntity te = worldIn.getTileEntity(pos);
-        if (te == null) {
-        	return false;
+        if (!(te instanceof TileEntityLowVoltageConduit)) {
+        	return state;
         }
-        return (te instanceof TileEntityLowVoltageConduit) || (te.hasCapability(EnergyCapabilities.CAPABILITY_HOLDER, direction.getOpposite()));
+        //connections are worked out by the tile from its neighbor cache and synced to the client
+        TileEntityLowVoltageConduit conduit = (TileEntityLowVoltageConduit)te;
+        return state
+        		.withProperty(NORTH, Boolean.valueOf(conduit.north != TileEntityLowVoltageConduit.EnumConduitConnection.NONE))
+        		.withProperty(SOUTH, Boolean.valueOf(conduit.south != TileEntityLowVoltageConduit.EnumConduitConnection.NONE))
+                .withProperty(WEST,  Boolean.valueOf(conduit.west != TileEntityLowVoltageConduit.EnumConduitConnection.NONE))
+                .withProperty(EAST,  Boolean.valueOf(conduit.east != TileEntityLowVoltageConduit.EnumConduitConnection.NONE))
+                .withProperty(UP,  Boolean.valueOf(conduit.up != TileEntityLowVoltageConduit.EnumConduitConnection.NONE))
+                .withProperty(DOWN,  Boolean.valueOf(conduit.down != TileEntityLowVoltageConduit.EnumConduitConnection.NONE));
     }
     
     @Override
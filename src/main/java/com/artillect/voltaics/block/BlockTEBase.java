@@ -1,5 +1,8 @@
 package com.artillect.voltaics.block;
 
+import com.artillect.voltaics.tileentity.TileEntityBase;
+
+import net.minecraft.block.Block;
 import net.minecraft.block.ITileEntityProvider;
 import net.minecraft.block.material.Material;
 import net.minecraft.block.state.IBlockState;
@@ -9,6 +12,7 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.EnumHand;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 
 public class BlockTEBase extends BlockBase implements ITileEntityProvider {
@@ -20,4 +24,20 @@ public class BlockTEBase extends BlockBase implements ITileEntityProvider {
 	public TileEntity createNewTileEntity(World worldIn, int meta) {
 		return null;
 	}
+	
+	@Override
+	public void neighborChanged(IBlockState state, World world, BlockPos pos, Block block, BlockPos fromPos){
+		TileEntity te = world.getTileEntity(pos);
+		if (te instanceof TileEntityBase){
+			((TileEntityBase)te).onNeighborChanged(fromPos);
+		}
+	}
+	
+	@Override
+	public void onNeighborChange(IBlockAccess world, BlockPos pos, BlockPos neighbor){
+		TileEntity te = world.getTileEntity(pos);
+		if (te instanceof TileEntityBase){
+			((TileEntityBase)te).onNeighborChanged(neighbor);
+		}
+	}
 }
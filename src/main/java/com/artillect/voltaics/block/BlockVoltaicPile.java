@@ -1,6 +1,5 @@
 package com.artillect.voltaics.block;
 
-import com.artillect.voltaics.tileentity.TileEntityLowVoltageConduit;
 import com.artillect.voltaics.tileentity.TileEntityVoltaicPile;
 
 import net.minecraft.block.BlockHorizontal;
@@ -52,49 +51,10 @@ public class BlockVoltaicPile extends BlockTEBase {
     
     @Override
     public IBlockState getStateForPlacement(World world, BlockPos pos, EnumFacing facing, float hitX, float hitY, float hitZ, int meta, EntityLivingBase placer, EnumHand hand) {
-		if (world.getTileEntity(pos.up()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.up())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.down()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.down())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.north()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.north())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.south()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.south())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.west()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.west())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.east()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.east())).updateNeighbors(world);
-		}
     	return this.getDefaultState().withProperty(FACING, placer.getHorizontalFacing().getOpposite());
 
     }
 	
-	public void onBlockHarvested(World world, BlockPos pos, IBlockState state, EntityPlayer player){
-		if (world.getTileEntity(pos.up()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.up())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.down()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.down())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.north()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.north())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.south()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.south())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.west()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.west())).updateNeighbors(world);
-		}
-		if (world.getTileEntity(pos.east()) instanceof TileEntityLowVoltageConduit){
-			((TileEntityLowVoltageConduit)world.getTileEntity(pos.east())).updateNeighbors(world);
-		}
-	}
-    
 	@Override
 	public TileEntity createNewTileEntity(World worldIn, int meta) {
 		return new TileEntityVoltaicPile();
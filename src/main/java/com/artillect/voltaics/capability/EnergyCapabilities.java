@@ -3,12 +3,15 @@ package com.artillect.voltaics.capability;
 import com.artillect.voltaics.power.IEnergyConsumer;
 import com.artillect.voltaics.power.IEnergyHolder;
 import com.artillect.voltaics.power.IEnergyProducer;
+import com.artillect.voltaics.power.implementation.BaseEnergyContainer;
 
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.util.EnumFacing;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.Capability.IStorage;
 import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.util.INBTSerializable;
 
 public class EnergyCapabilities {
     
@@ -30,17 +33,55 @@ public class EnergyCapabilities {
     @CapabilityInject(IEnergyHolder.class)
     public static Capability<IEnergyHolder> CAPABILITY_HOLDER = null;
     
+    /**
+     * Registers the Joule capabilities with Forge, which fills in the fields above. Must be
+     * called during pre initialization, before any tile entity is created. The default
+     * instance of every capability is an empty {@link BaseEnergyContainer}.
+     */
+    public static void register () {
+        
+        CapabilityManager.INSTANCE.register(IEnergyConsumer.class, new CapabilityJouleConsumer<IEnergyConsumer>(), BaseEnergyContainer::new);
+        CapabilityManager.INSTANCE.register(IEnergyProducer.class, new CapabilityJouleProducer<IEnergyProducer>(), BaseEnergyContainer::new);
+        CapabilityManager.INSTANCE.register(IEnergyHolder.class, new CapabilityJouleHolder<IEnergyHolder>(), BaseEnergyContainer::new);
+    }
+    
+    /**
+     * Writes a capability instance to NBT, if it knows how to write itself.
+     * 
+     * @param instance The capability instance to write.
+     * @return The written data, or null if the instance can not be written.
+     */
+    @SuppressWarnings("unchecked")
+    static NBTBase writeInstance (Object instance) {
+        
+        return instance instanceof INBTSerializable ? ((INBTSerializable<NBTBase>) instance).serializeNBT() : null;
+    }
+    
+    /**
+     * Reads a capability instance from NBT, if it knows how to read itself.
+     * 
+     * @param instance The capability instance to read into.
+     * @param nbt The data written by {@link #writeInstance(Object)}.
+     */
+    @SuppressWarnings("unchecked")
+    static void readInstance (Object instance, NBTBase nbt) {
+        
+        if (instance instanceof INBTSerializable && nbt != null)
+            ((INBTSerializable<NBTBase>) instance).deserializeNBT(nbt);
+    }
+    
     public static class CapabilityJouleConsumer<T extends IEnergyConsumer> implements IStorage<IEnergyConsumer> {
         
         @Override
         public NBTBase writeNBT (Capability<IEnergyConsumer> capability, IEnergyConsumer instance, EnumFacing side) {
             
-            return null;
+            return writeInstance(instance);
         }
         
         @Override
         public void readNBT (Capability<IEnergyConsumer> capability, IEnergyConsumer instance, EnumFacing side, NBTBase nbt) {
-        
+            
+            readInstance(instance, nbt);
         }
     }
     
@@ -49,12 +90,13 @@ public class EnergyCapabilities {
         @Override
         public NBTBase writeNBT (Capability<IEnergyProducer> capability, IEnergyProducer instance, EnumFacing side) {
             
-            return null;
+            return writeInstance(instance);
         }
         
         @Override
         public void readNBT (Capability<IEnergyProducer> capability, IEnergyProducer instance, EnumFacing side, NBTBase nbt) {
-        
+            
+            readInstance(instance, nbt);
         }
     }
     
@@ -63,12 +105,13 @@ public class EnergyCapabilities {
         @Override
         public NBTBase writeNBT (Capability<IEnergyHolder> capability, IEnergyHolder instance, EnumFacing side) {
             
-            return null;
+            return writeInstance(instance);
         }
         
         @Override
         public void readNBT (Capability<IEnergyHolder> capability, IEnergyHolder instance, EnumFacing side, NBTBase nbt) {
-        
+            
+            readInstance(instance, nbt);
         }
     }
 }
\ No newline at end of file
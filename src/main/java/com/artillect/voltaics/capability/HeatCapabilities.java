@@ -1,10 +1,12 @@
 package com.artillect.voltaics.capability;
 
 import com.artillect.voltaics.power.IHeat;
+import com.artillect.voltaics.power.implementation.BaseHeatMachine;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.util.EnumFacing;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
 import net.minecraftforge.common.capabilities.Capability.IStorage;
 
 public class HeatCapabilities {
@@ -14,17 +16,28 @@ public class HeatCapabilities {
     @CapabilityInject(IHeat.class)
     public static Capability<IHeat> CAPABILITY_HEAT = null;
     
+    /**
+     * Registers the heat capability with Forge, which fills in the field above. Must be called
+     * during pre initialization, before any tile entity is created. The default instance is a
+     * {@link BaseHeatMachine}.
+     */
+    public static void register () {
+        
+        CapabilityManager.INSTANCE.register(IHeat.class, new CapabilityHeat<IHeat>(), BaseHeatMachine::new);
+    }
+    
     public static class CapabilityHeat<T extends IHeat> implements IStorage<IHeat> {
         
         @Override
         public NBTBase writeNBT (Capability<IHeat> capability, IHeat instance, EnumFacing side) {
             
-            return null;
+            return EnergyCapabilities.writeInstance(instance);
         }
         
         @Override
         public void readNBT (Capability<IHeat> capability, IHeat instance, EnumFacing side, NBTBase nbt) {
-        
+            
+            EnergyCapabilities.readInstance(instance, nbt);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.artillect.voltaics.event;
+
+import com.artillect.voltaics.lib.BlockChangeQueue;
+import com.artillect.voltaics.lib.EnergyTileRegistry;
+import com.artillect.voltaics.lib.TickScheduler;
+import com.artillect.voltaics.network.TileSyncManager;
+import com.artillect.voltaics.power.grid.ConduitNetworkManager;
+import com.artillect.voltaics.power.heat.ThermalManager;
+
+import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+public class WorldTickHandler {
+	@SubscribeEvent
+	public void onChunkWatch(ChunkWatchEvent.Watch event){
+		TileSyncManager.sendChunkState(event.getPlayer(), event.getChunk());
+	}
+	
+	@SubscribeEvent
+	public void onWorldTick(TickEvent.WorldTickEvent event){
+		if (event.phase != TickEvent.Phase.END || event.world.isRemote){
+			return;
+		}
+		ConduitNetworkManager.tickWorld(event.world);
+		ThermalManager.tickWorld(event.world);
+		BlockChangeQueue.flushWorld(event.world);
+		TickScheduler.tickWorld(event.world);
+		TileSyncManager.flushWorld(event.world);
+	}
+	
+	@SubscribeEvent
+	public void onWorldUnload(WorldEvent.Unload event){
+		if (!event.getWorld().isRemote){
+			ConduitNetworkManager.unloadWorld(event.getWorld());
+			ThermalManager.unloadWorld(event.getWorld());
+			TickScheduler.unloadWorld(event.getWorld());
+			EnergyTileRegistry.unloadWorld(event.getWorld());
+			BlockChangeQueue.unloadWorld(event.getWorld());
+			TileSyncManager.unloadWorld(event.getWorld());
+		}
+	}
+}
@@ -4,6 +4,7 @@ import com.artillect.voltaics.capability.EnergyCapabilities;
 import com.artillect.voltaics.capability.HeatCapabilities;
 import com.artillect.voltaics.power.IEnergyHolder;
 import com.artillect.voltaics.power.IHeat;
+import com.artillect.voltaics.tileentity.TileEntityBase;
 
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
@@ -23,7 +24,7 @@ public class ItemThermometer extends ItemBase {
 	
 	@Override
 	public EnumActionResult onItemUse(EntityPlayer player, World worldIn, BlockPos pos, EnumHand hand, EnumFacing facing, float hitX, float hitY, float hitZ) {
-		if (worldIn.isRemote) return EnumActionResult.PASS;
+		if (!worldIn.isRemote) return EnumActionResult.PASS;
 		TileEntity te = worldIn.getTileEntity(pos);
 		if (te == null) return EnumActionResult.PASS;
 
@@ -31,7 +32,7 @@ public class ItemThermometer extends ItemBase {
 
 		IHeat heatBuffer = te.getCapability(HeatCapabilities.CAPABILITY_HEAT, facing);
 		
-		double temperature = heatBuffer.getTemperature();		
+		double temperature = te instanceof TileEntityBase ? ((TileEntityBase) te).getReadout(TileEntityBase.SYNC_TEMPERATURE) : heatBuffer.getTemperature();		
 		player.sendMessage(new TextComponentString("Temperature: "+temperature+" C"));
 		return EnumActionResult.SUCCESS;
 	}
@@ -2,6 +2,7 @@ package com.artillect.voltaics.item;
 
 import com.artillect.voltaics.capability.EnergyCapabilities;
 import com.artillect.voltaics.power.IEnergyHolder;
+import com.artillect.voltaics.tileentity.TileEntityBase;
 
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
@@ -29,7 +30,7 @@ public class ItemVoltmeter extends ItemBase {
 
 		IEnergyHolder energyBuffer = te.getCapability(EnergyCapabilities.CAPABILITY_HOLDER, facing);
 		
-		double storedEnergy = energyBuffer.getStoredPower();
+		double storedEnergy = te instanceof TileEntityBase ? ((TileEntityBase) te).getReadout(TileEntityBase.SYNC_POWER) : energyBuffer.getStoredPower();
 		double maxStoredEnergy = energyBuffer.getCapacity();		
 		player.sendMessage(new TextComponentString("Stored Energy: "+storedEnergy+" Therms"));
 		player.sendMessage(new TextComponentString("Max Energy Storage: "+maxStoredEnergy+" Therms"));
@@ -0,0 +1,145 @@
+package com.artillect.voltaics.lib;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Collects block changes caused by machines failing, such as melting, and applies them
+ * together at the end of the world tick. Changes are grouped by chunk, and each chunk is
+ * flushed at once: every block in it is set without notifying anything, and then the
+ * neighbors of the changed blocks are notified once each. Blocks that changed themselves are
+ * not notified about each other, so a large meltdown does not set off a cascade of neighbor
+ * updates inside the tick.
+ */
+public class BlockChangeQueue {
+
+    /**
+     * The queues for every loaded server world.
+     */
+    private static final PerWorld<BlockChangeQueue> QUEUES = new PerWorld<BlockChangeQueue>(BlockChangeQueue::new);
+
+    /**
+     * The world this queue belongs to.
+     */
+    private final World world;
+
+    /**
+     * The queued changes, grouped by the packed position of their chunk and kept in the order
+     * they were queued.
+     */
+    private final Long2ObjectLinkedOpenHashMap<Long2ObjectOpenHashMap<IBlockState>> chunks = new Long2ObjectLinkedOpenHashMap<Long2ObjectOpenHashMap<IBlockState>>();
+
+    private BlockChangeQueue(World world) {
+
+        this.world = world;
+    }
+
+    /**
+     * Gets the queue for a world, creating it if needed. Should only be used on the server.
+     *
+     * @param world The world to get the queue for.
+     * @return The block change queue for the world.
+     */
+    public static BlockChangeQueue get (World world) {
+
+        return QUEUES.get(world);
+    }
+
+    /**
+     * Applies the queued changes of a world, if it has any.
+     *
+     * @param world The world being ticked.
+     */
+    public static void flushWorld (World world) {
+
+        final BlockChangeQueue queue = QUEUES.getIfPresent(world);
+
+        if (queue != null)
+            queue.flush();
+    }
+
+    /**
+     * Drops the queue of a world that is being unloaded.
+     *
+     * @param world The world being unloaded.
+     */
+    public static void unloadWorld (World world) {
+
+        QUEUES.remove(world);
+    }
+
+    /**
+     * Queues a block to be replaced at the end of the tick. If the block has already been
+     * queued this tick, the first change is kept.
+     *
+     * @param pos The position of the block.
+     * @param state The state to replace the block with.
+     */
+    public void queue (BlockPos pos, IBlockState state) {
+
+        final long key = EnergyTileRegistry.pack(pos.getX() >> 4, 0, pos.getZ() >> 4);
+        Long2ObjectOpenHashMap<IBlockState> changes = this.chunks.get(key);
+
+        if (changes == null) {
+
+            changes = new Long2ObjectOpenHashMap<IBlockState>();
+            this.chunks.put(key, changes);
+        }
+
+        final long packed = pos.toLong();
+
+        if (!changes.containsKey(packed))
+            changes.put(packed, state);
+    }
+
+    /**
+     * Applies every queued change, one chunk at a time.
+     */
+    private void flush () {
+
+        if (this.chunks.isEmpty())
+            return;
+
+        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        final LongOpenHashSet notified = new LongOpenHashSet();
+
+        while (!this.chunks.isEmpty()) {
+
+            final Long2ObjectOpenHashMap<IBlockState> changes = this.chunks.removeFirst();
+
+            for (final Long2ObjectMap.Entry<IBlockState> change : changes.long2ObjectEntrySet()) {
+
+                final BlockPos changed = BlockPos.fromLong(change.getLongKey());
+
+                if (this.world.isBlockLoaded(changed))
+                    this.world.setBlockState(changed, change.getValue(), 2);
+            }
+
+            for (final Long2ObjectMap.Entry<IBlockState> change : changes.long2ObjectEntrySet()) {
+
+                final BlockPos changed = BlockPos.fromLong(change.getLongKey());
+
+                for (final EnumFacing side : EnumFacing.VALUES) {
+
+                    final long neighbor = EnergyTileRegistry.offset(change.getLongKey(), side);
+
+                    if (changes.containsKey(neighbor) || !notified.add(neighbor))
+                        continue;
+
+                    pos.setPos(changed.getX() + side.getFrontOffsetX(), changed.getY() + side.getFrontOffsetY(), changed.getZ() + side.getFrontOffsetZ());
+
+                    if (this.world.isBlockLoaded(pos))
+                        this.world.neighborChanged(pos, change.getValue().getBlock(), changed);
+                }
+            }
+
+            notified.clear();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.artillect.voltaics.lib;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraftforge.common.capabilities.Capability;
+
+/**
+ * A table of the capabilities a tile entity class exposes, and the sides it exposes each of
+ * them on. Each capability is given a slot, and tiles keep their handlers in an array indexed
+ * by slot, so finding the handler for a capability is a single hash lookup no matter how many
+ * capabilities the tile has. One table should be shared by every instance of a class.
+ *
+ * Tables should be built in static fields of the tile classes. Those are only initialized when
+ * the first tile is created, after the capabilities have been injected.
+ */
+public class CapabilityDispatch {
+
+    /**
+     * A side mask that covers every side.
+     */
+    public static final int ALL_SIDES = (1 << EnumFacing.VALUES.length) - 1;
+
+    /**
+     * The slot of every capability in the table.
+     */
+    private final Map<Capability<?>, Integer> slots = new IdentityHashMap<Capability<?>, Integer>();
+
+    /**
+     * The sides each slot is exposed on, as a bit mask indexed by {@link EnumFacing#getIndex()}.
+     */
+    private int[] sideMasks = new int[0];
+
+    /**
+     * Adds a capability that is exposed on every side.
+     *
+     * @param capability The capability to add.
+     * @return The table being built.
+     */
+    public CapabilityDispatch add (Capability<?> capability) {
+
+        return this.add(capability, ALL_SIDES);
+    }
+
+    /**
+     * Adds a capability that is only exposed on some sides. Access without a side is always
+     * allowed.
+     *
+     * @param capability The capability to add.
+     * @param sides The sides to expose the capability on, as a bit mask indexed by
+     *        {@link EnumFacing#getIndex()}.
+     * @return The table being built.
+     */
+    public CapabilityDispatch add (Capability<?> capability, int sides) {
+
+        final int slot = this.sideMasks.length;
+        this.sideMasks = Arrays.copyOf(this.sideMasks, slot + 1);
+        this.sideMasks[slot] = sides;
+        this.slots.put(capability, slot);
+        return this;
+    }
+
+    /**
+     * Gets the number of slots in the table.
+     *
+     * @return The amount of capabilities that have been added.
+     */
+    public int size () {
+
+        return this.sideMasks.length;
+    }
+
+    /**
+     * Gets the slot of a capability, if it is exposed on a side.
+     *
+     * @param capability The capability being asked for.
+     * @param facing The side it is being asked for on, or null for internal access.
+     * @return The slot of the capability, or -1 if it is not exposed on that side.
+     */
+    public int getSlot (Capability<?> capability, EnumFacing facing) {
+
+        final Integer slot = this.slots.get(capability);
+
+        if (slot == null || facing != null && (this.sideMasks[slot] & 1 << facing.getIndex()) == 0)
+            return -1;
+
+        return slot;
+    }
+}
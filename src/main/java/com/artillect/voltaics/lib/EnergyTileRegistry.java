@@ -0,0 +1,163 @@
+package com.artillect.voltaics.lib;
+
+import com.artillect.voltaics.tileentity.TileEntityBase;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+
+/**
+ * Keeps an index of every loaded Voltaics tile entity in a world, keyed by its position packed
+ * into a long in the same format as {@link net.minecraft.util.math.BlockPos#toLong()}. Tiles
+ * add themselves when they are loaded and remove themselves when they are removed or
+ * unloaded. Looking a tile up here does not touch the chunk tile maps and needs no BlockPos,
+ * and a position that is not in the index is known to hold no loaded Voltaics tile.
+ */
+public class EnergyTileRegistry {
+
+    private static final int NUM_X_BITS = 26;
+    private static final int NUM_Z_BITS = NUM_X_BITS;
+    private static final int NUM_Y_BITS = 64 - NUM_X_BITS - NUM_Z_BITS;
+    private static final int Y_SHIFT = NUM_Z_BITS;
+    private static final int X_SHIFT = Y_SHIFT + NUM_Y_BITS;
+    private static final long X_MASK = (1L << NUM_X_BITS) - 1L;
+    private static final long Y_MASK = (1L << NUM_Y_BITS) - 1L;
+    private static final long Z_MASK = (1L << NUM_Z_BITS) - 1L;
+
+    /**
+     * The registries for every loaded server world.
+     */
+    private static final PerWorld<EnergyTileRegistry> REGISTRIES = new PerWorld<EnergyTileRegistry>(world -> new EnergyTileRegistry());
+
+    /**
+     * Every loaded Voltaics tile in the world, keyed by its packed position.
+     */
+    private final Long2ObjectOpenHashMap<TileEntityBase> tiles = new Long2ObjectOpenHashMap<TileEntityBase>();
+
+    /**
+     * Gets the registry for a world, creating it if needed. Should only be used on the server.
+     *
+     * @param world The world to get the registry for.
+     * @return The energy tile registry for the world.
+     */
+    public static EnergyTileRegistry get (World world) {
+
+        return REGISTRIES.get(world);
+    }
+
+    /**
+     * Drops the registry of a world that is being unloaded.
+     *
+     * @param world The world being unloaded.
+     */
+    public static void unloadWorld (World world) {
+
+        REGISTRIES.remove(world);
+    }
+
+    /**
+     * Packs a position into a long, the same way as {@link net.minecraft.util.math.BlockPos#toLong()}.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param z The z coordinate.
+     * @return The packed position.
+     */
+    public static long pack (int x, int y, int z) {
+
+        return ((long) x & X_MASK) << X_SHIFT | ((long) y & Y_MASK) << Y_SHIFT | (long) z & Z_MASK;
+    }
+
+    /**
+     * Gets the position next to a packed position, without unpacking it into a BlockPos.
+     *
+     * @param pos The packed position.
+     * @param side The side to move towards.
+     * @return The packed position of the neighbor.
+     */
+    public static long offset (long pos, EnumFacing side) {
+
+        final int x = (int) (pos << 64 - X_SHIFT - NUM_X_BITS >> 64 - NUM_X_BITS);
+        final int y = (int) (pos << 64 - Y_SHIFT - NUM_Y_BITS >> 64 - NUM_Y_BITS);
+        final int z = (int) (pos << 64 - NUM_Z_BITS >> 64 - NUM_Z_BITS);
+        return pack(x + side.getFrontOffsetX(), y + side.getFrontOffsetY(), z + side.getFrontOffsetZ());
+    }
+
+    /**
+     * Adds a tile that has been loaded.
+     *
+     * @param tile The tile to add.
+     */
+    public void add (TileEntityBase tile) {
+
+        this.tiles.put(tile.getPos().toLong(), tile);
+    }
+
+    /**
+     * Removes a tile that has been removed or unloaded. Nothing happens if another tile has
+     * already taken its place.
+     *
+     * @param tile The tile to remove.
+     */
+    public void remove (TileEntityBase tile) {
+
+        final long key = tile.getPos().toLong();
+
+        if (this.tiles.get(key) == tile)
+            this.tiles.remove(key);
+    }
+
+    /**
+     * Tells the Voltaics tiles touching a tile that it has been loaded or unloaded, so they drop
+     * the face they have cached for it. Chunks loading and unloading do not send neighbor
+     * updates, so without this a neighbor would keep using an unloaded tile, or never find one
+     * that has just been loaded.
+     *
+     * @param tile The tile that was loaded or unloaded.
+     */
+    public void notifyNeighbors (TileEntityBase tile) {
+
+        final long pos = tile.getPos().toLong();
+
+        for (final EnumFacing side : EnumFacing.VALUES) {
+
+            final TileEntityBase neighbor = this.tiles.get(offset(pos, side));
+
+            if (neighbor != null && neighbor != tile)
+                neighbor.onNeighborChanged(tile.getPos());
+        }
+    }
+
+    /**
+     * Gets the tile at a packed position.
+     *
+     * @param pos The packed position.
+     * @return The loaded Voltaics tile at the position, or null if there is none.
+     */
+    public TileEntityBase getTile (long pos) {
+
+        return this.tiles.get(pos);
+    }
+
+    /**
+     * Gets the positions of every loaded Voltaics tile in the world. The set is backed by the
+     * registry and must not be changed.
+     *
+     * @return The packed positions of every tile.
+     */
+    public LongSet getPositions () {
+
+        return this.tiles.keySet();
+    }
+
+    /**
+     * Gets the number of loaded Voltaics tiles in the world.
+     *
+     * @return The amount of tiles in the registry.
+     */
+    public int size () {
+
+        return this.tiles.size();
+    }
+}
@@ -0,0 +1,279 @@
+package com.artillect.voltaics.lib;
+
+import java.util.Arrays;
+
+import com.artillect.voltaics.power.IEnergyConsumer;
+import com.artillect.voltaics.power.IEnergyProducer;
+import com.artillect.voltaics.power.IEnergyReservable;
+
+/**
+ * Moves power from a set of producers into a set of consumers in one step. Each endpoint is
+ * asked once, when it is added, how much it could give or take, and is then called once more
+ * when the transaction is committed or rolled back. Endpoints that are
+ * {@link IEnergyReservable} hold that amount for the transaction, so nothing else can use it
+ * in between and the commit moves exactly what was planned. Other endpoints are simulated
+ * when they are added and called for real on commit, so they may still come up short.
+ *
+ * Reserving and settling is still two calls per endpoint, the same as simulating and then
+ * moving power. Splitting power fairly needs every endpoint's amount before anything is moved,
+ * so the count can not go lower. What reservations buy is that the second call moves exactly
+ * what was planned.
+ *
+ * A transaction must be committed or rolled back before the end of the tick it was started
+ * in, otherwise the reserved power stays out of reach. Once it has been, the transaction is
+ * empty and can be used again.
+ */
+public class EnergyTransaction {
+
+    /**
+     * The producer or consumer of every entry.
+     */
+    private Object[] endpoints = new Object[8];
+
+    /**
+     * The reservable view of every entry, or null if the endpoint can not reserve power.
+     */
+    private IEnergyReservable[] reservables = new IEnergyReservable[8];
+
+    /**
+     * Whether each entry takes power out of a producer rather than giving it to a consumer.
+     */
+    private boolean[] takes = new boolean[8];
+
+    /**
+     * The amount each entry reserved, or found by simulating if it is not reservable.
+     */
+    private long[] reserved = new long[8];
+
+    /**
+     * The amount each entry should move on commit.
+     */
+    private long[] amounts = new long[8];
+
+    /**
+     * The number of entries in the transaction.
+     */
+    private int count;
+
+    /**
+     * Power provided by the caller itself, on top of what is taken from producers.
+     */
+    private long supplied;
+
+    /**
+     * Adds a producer to take power from.
+     *
+     * @param producer The producer to take power from.
+     * @param power The most power that may be taken.
+     * @return The index of the new entry.
+     */
+    public int reserveTake (IEnergyProducer producer, long power) {
+
+        final IEnergyReservable reservable = producer instanceof IEnergyReservable ? (IEnergyReservable) producer : null;
+        final long available = reservable != null ? reservable.reserveOutput(power) : producer.takePower(power, true);
+        return this.add(producer, reservable, true, available);
+    }
+
+    /**
+     * Adds a consumer to give power to.
+     *
+     * @param consumer The consumer to give power to.
+     * @param power The most power that may be given.
+     * @return The index of the new entry.
+     */
+    public int reserveGive (IEnergyConsumer consumer, long power) {
+
+        final IEnergyReservable reservable = consumer instanceof IEnergyReservable ? (IEnergyReservable) consumer : null;
+        final long accepted = reservable != null ? reservable.reserveInput(power) : consumer.givePower(power, true);
+        return this.add(consumer, reservable, false, accepted);
+    }
+
+    /**
+     * Adds power that the caller provides itself, for example out of its own buffer. Supplied
+     * power is given out before any power is taken from producers.
+     *
+     * @param power The amount of power being supplied.
+     */
+    public void supply (long power) {
+
+        this.supplied += power;
+    }
+
+    /**
+     * Gets the amount an entry reserved.
+     *
+     * @param entry The index of the entry.
+     * @return The amount of power that can be moved by the entry.
+     */
+    public long getReserved (int entry) {
+
+        return this.reserved[entry];
+    }
+
+    /**
+     * Sets how much an entry should move on commit. Entries start out moving everything they
+     * reserved.
+     *
+     * @param entry The index of the entry.
+     * @param power The amount of power to move, clamped between zero and the reserved amount.
+     */
+    public void setAmount (int entry, long power) {
+
+        this.amounts[entry] = Math.max(0, Math.min(this.reserved[entry], power));
+    }
+
+    /**
+     * Gets the number of entries in the transaction.
+     *
+     * @return The amount of producers and consumers that have been added.
+     */
+    public int size () {
+
+        return this.count;
+    }
+
+    /**
+     * Moves the power. The consumers are given power in the order they were added, up to the
+     * supplied power plus what the producers can hand over. Producers that can not reserve are
+     * only called for what the supplied and reserved power do not cover, and are taken from
+     * first, so the power they hand over is used before anything else. If the consumers still
+     * refuse some of it, it is given back to those producers that also accept power, and is
+     * only lost for producers that do not.
+     *
+     * @return The amount of power that was given to consumers.
+     */
+    public long commit () {
+
+        long guaranteed = this.supplied;
+        long supply = this.supplied;
+        long demand = 0;
+
+        for (int i = 0; i < this.count; i++) {
+
+            if (!this.takes[i])
+                demand += this.amounts[i];
+
+            else {
+
+                supply += this.amounts[i];
+
+                if (this.reservables[i] != null)
+                    guaranteed += this.amounts[i];
+            }
+        }
+
+        final long budget = Math.min(supply, demand);
+        final long needed = Math.max(0, budget - guaranteed);
+        long taken = 0;
+
+        for (int i = 0; i < this.count; i++) {
+
+            if (!this.takes[i] || this.reservables[i] != null)
+                continue;
+
+            final long amount = Math.min(this.amounts[i], needed - taken);
+            this.amounts[i] = amount > 0 ? ((IEnergyProducer) this.endpoints[i]).takePower(amount, false) : 0;
+            taken += this.amounts[i];
+        }
+
+        final long available = Math.min(budget, guaranteed + taken);
+        long given = 0;
+
+        for (int i = 0; i < this.count; i++) {
+
+            if (this.takes[i])
+                continue;
+
+            final long amount = Math.min(this.amounts[i], available - given);
+
+            if (this.reservables[i] != null)
+                given += this.reservables[i].settleInput(this.reserved[i], amount);
+
+            else if (amount > 0)
+                given += ((IEnergyConsumer) this.endpoints[i]).givePower(amount, false);
+        }
+
+        //what was given is paid for by the unreservable producers first, then the supplied power
+        long owed = given - taken;
+
+        for (int i = 0; i < this.count && owed < 0; i++) {
+
+            if (this.takes[i] && this.reservables[i] == null && this.amounts[i] > 0 && this.endpoints[i] instanceof IEnergyConsumer)
+                owed += ((IEnergyConsumer) this.endpoints[i]).givePower(Math.min(this.amounts[i], -owed), false);
+        }
+
+        owed = Math.max(0, owed - this.supplied);
+
+        for (int i = 0; i < this.count; i++) {
+
+            if (this.takes[i] && this.reservables[i] != null) {
+
+                final long settled = this.reservables[i].settleOutput(this.reserved[i], Math.min(this.amounts[i], owed));
+                owed -= settled;
+            }
+        }
+
+        this.clear();
+        return given;
+    }
+
+    /**
+     * Cancels the transaction, freeing every reservation without moving any power.
+     */
+    public void rollback () {
+
+        for (int i = 0; i < this.count; i++) {
+
+            if (this.reservables[i] == null)
+                continue;
+
+            if (this.takes[i])
+                this.reservables[i].settleOutput(this.reserved[i], 0);
+
+            else
+                this.reservables[i].settleInput(this.reserved[i], 0);
+        }
+
+        this.clear();
+    }
+
+    /**
+     * Adds an entry to the transaction.
+     *
+     * @param endpoint The producer or consumer of the entry.
+     * @param reservable The reservable view of the endpoint, or null if it has none.
+     * @param take Whether the entry takes power rather than giving it.
+     * @param reserved The amount of power the entry can move.
+     * @return The index of the new entry.
+     */
+    private int add (Object endpoint, IEnergyReservable reservable, boolean take, long reserved) {
+
+        if (this.count == this.endpoints.length) {
+
+            final int size = this.count * 2;
+            this.endpoints = Arrays.copyOf(this.endpoints, size);
+            this.reservables = Arrays.copyOf(this.reservables, size);
+            this.takes = Arrays.copyOf(this.takes, size);
+            this.reserved = Arrays.copyOf(this.reserved, size);
+            this.amounts = Arrays.copyOf(this.amounts, size);
+        }
+
+        this.endpoints[this.count] = endpoint;
+        this.reservables[this.count] = reservable;
+        this.takes[this.count] = take;
+        this.reserved[this.count] = reserved;
+        this.amounts[this.count] = reserved;
+        return this.count++;
+    }
+
+    /**
+     * Forgets every entry so the transaction can be used again.
+     */
+    private void clear () {
+
+        Arrays.fill(this.endpoints, 0, this.count, null);
+        Arrays.fill(this.reservables, 0, this.count, null);
+        this.count = 0;
+        this.supplied = 0;
+    }
+}
@@ -26,6 +26,20 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 public class JouleUtils {
     
+    /**
+     * Scratch arrays and a transaction for
+     * {@link #distributePowerFairly(NeighborCache, long, boolean)}, so it does not allocate
+     * anything.
+     */
+    private static final ThreadLocal<FaceScratch> SCRATCH = new ThreadLocal<FaceScratch>() {
+        
+        @Override
+        protected FaceScratch initialValue () {
+            
+            return new FaceScratch();
+        }
+    };
+    
     /**
      * The smallest unit of power measurement.
      */
@@ -250,6 +264,8 @@ public class JouleUtils {
     /**
      * Gets a list of all capabilities that touch a BlockPos. This will search for tile
      * entities touching the BlockPos and then query them for access to their capabilities.
+     * This allocates a new list every time, so code that runs every tick should use
+     * {@link #forEachConnected(Capability, World, BlockPos, IConnectedVisitor)} instead.
      * 
      * @param capability The capability you want to retrieve.
      * @param world The world that this is happening in.
@@ -259,18 +275,45 @@ public class JouleUtils {
     public static <T> List<T> getConnectedCapabilities (Capability<T> capability, World world, BlockPos pos) {
         
         final List<T> capabilities = new ArrayList<T>();
+        final BlockPos.PooledMutableBlockPos neighbor = BlockPos.PooledMutableBlockPos.retain();
         
-        for (final EnumFacing side : EnumFacing.values()) {
+        for (final EnumFacing side : EnumFacing.VALUES) {
             
-            final TileEntity tile = world.getTileEntity(pos.offset(side));
+            final T found = getConnectedCapability(capability, world, neighbor.setPos(pos).move(side), side);
             
-            if (tile != null && !tile.isInvalid() && tile.hasCapability(capability, side.getOpposite()))
-                capabilities.add(tile.getCapability(capability, side.getOpposite()));
+            if (found != null)
+                capabilities.add(found);
         }
         
+        neighbor.release();
         return capabilities;
     }
     
+    /**
+     * Visits every capability that touches a BlockPos, without allocating anything. This does
+     * the same search as {@link #getConnectedCapabilities(Capability, World, BlockPos)}.
+     * 
+     * @param capability The capability you want to retrieve.
+     * @param world The world that this is happening in.
+     * @param pos The position to search around.
+     * @param visitor The visitor to call for every capability found. This should be kept in a
+     *        field rather than created for every call.
+     */
+    public static <T> void forEachConnected (Capability<T> capability, World world, BlockPos pos, IConnectedVisitor<? super T> visitor) {
+        
+        final BlockPos.PooledMutableBlockPos neighbor = BlockPos.PooledMutableBlockPos.retain();
+        
+        for (final EnumFacing side : EnumFacing.VALUES) {
+            
+            final T found = getConnectedCapability(capability, world, neighbor.setPos(pos).move(side), side);
+            
+            if (found != null)
+                visitor.visit(found, side);
+        }
+        
+        neighbor.release();
+    }
+    
     /**
      * Attempts to give power to all consumers touching the given BlockPos.
      * 
@@ -283,10 +326,17 @@ public class JouleUtils {
     public static long distributePowerToAllFaces (World world, BlockPos pos, long amount, boolean simulated) {
         
         long consumedPower = 0L;
+        final BlockPos.PooledMutableBlockPos neighbor = BlockPos.PooledMutableBlockPos.retain();
         
-        for (final IEnergyConsumer consumer : getConnectedCapabilities(EnergyCapabilities.CAPABILITY_CONSUMER, world, pos))
-            consumedPower += consumer.givePower(amount, simulated);
+        for (final EnumFacing side : EnumFacing.VALUES) {
+            
+            final IEnergyConsumer consumer = getConnectedCapability(EnergyCapabilities.CAPABILITY_CONSUMER, world, neighbor.setPos(pos).move(side), side);
             
+            if (consumer != null)
+                consumedPower += consumer.givePower(amount, simulated);
+        }
+        
+        neighbor.release();
         return consumedPower;
     }
     
@@ -302,13 +352,223 @@ public class JouleUtils {
     public static long consumePowerFromAllFaces (World world, BlockPos pos, long amount, boolean simulated) {
         
         long recievedPower = 0L;
+        final BlockPos.PooledMutableBlockPos neighbor = BlockPos.PooledMutableBlockPos.retain();
         
-        for (final IEnergyProducer producer : getConnectedCapabilities(EnergyCapabilities.CAPABILITY_PRODUCER, world, pos))
-            recievedPower += producer.takePower(amount, simulated);
+        for (final EnumFacing side : EnumFacing.VALUES) {
             
+            final IEnergyProducer producer = getConnectedCapability(EnergyCapabilities.CAPABILITY_PRODUCER, world, neighbor.setPos(pos).move(side), side);
+            
+            if (producer != null)
+                recievedPower += producer.takePower(amount, simulated);
+        }
+        
+        neighbor.release();
         return recievedPower;
     }
     
+    /**
+     * Gets a capability from the tile entity next to a block, if that tile is loaded and has
+     * it on the face touching the block.
+     * 
+     * @param capability The capability you want to retrieve.
+     * @param world The world that this is happening in.
+     * @param neighbor The position of the neighboring tile.
+     * @param side The side of the original block that the neighbor is on.
+     * @return The capability, or null if there is none.
+     */
+    private static <T> T getConnectedCapability (Capability<T> capability, World world, BlockPos neighbor, EnumFacing side) {
+        
+        if (!world.isBlockLoaded(neighbor))
+            return null;
+            
+        final TileEntity tile = world.getTileEntity(neighbor);
+        
+        if (tile != null && !tile.isInvalid() && tile.hasCapability(capability, side.getOpposite()))
+            return tile.getCapability(capability, side.getOpposite());
+            
+        return null;
+    }
+    
+    /**
+     * Attempts to give power to all consumers held in a neighbor cache. This does the same
+     * thing as {@link #distributePowerToAllFaces(World, BlockPos, long, boolean)}, without
+     * looking the neighbors up in the world.
+     * 
+     * @param neighbors The neighbor cache of the tile giving power.
+     * @param amount The amount of power to offer to each individual face.
+     * @param simulated Whether or not this is being ran as part of a simulation.
+     * @return The amount of power that was consumed.
+     */
+    public static long distributePowerToAllFaces (NeighborCache neighbors, long amount, boolean simulated) {
+        
+        long consumedPower = 0L;
+        
+        for (final EnumFacing side : EnumFacing.VALUES) {
+            
+            final IEnergyConsumer consumer = neighbors.getConsumer(side);
+            
+            if (consumer != null)
+                consumedPower += consumer.givePower(amount, simulated);
+        }
+        
+        return consumedPower;
+    }
+    
+    /**
+     * Gives a fixed budget of power to the consumers held in a neighbor cache, split between
+     * them in proportion to how much each of them can accept. Unlike
+     * {@link #distributePowerToAllFaces(NeighborCache, long, boolean)}, no more than the budget
+     * is ever given out, and faces late in the {@link EnumFacing} order are not starved by
+     * earlier ones. Each consumer is asked once how much it can accept and given power once.
+     * 
+     * @param neighbors The neighbor cache of the tile giving power.
+     * @param budget The total amount of power to give out.
+     * @param simulated Whether or not this is being ran as part of a simulation.
+     * @return The amount of power that was consumed.
+     */
+    public static long distributePowerFairly (NeighborCache neighbors, long budget, boolean simulated) {
+        
+        final EnergyTransaction transaction = SCRATCH.get().transaction;
+        final long allocated = distributePowerFairly(neighbors, transaction, budget);
+        
+        if (simulated) {
+            
+            transaction.rollback();
+            return allocated;
+        }
+        
+        transaction.supply(budget);
+        return transaction.commit();
+    }
+    
+    /**
+     * Adds the consumers held in a neighbor cache to a transaction, splitting a budget of power
+     * between them in proportion to how much each of them can accept. Nothing is moved until
+     * the transaction is committed, so the power can come from producers in the same
+     * transaction.
+     * 
+     * @param neighbors The neighbor cache of the tile giving power.
+     * @param transaction The transaction to add the consumers to.
+     * @param budget The total amount of power to give out.
+     * @return The amount of power that was planned to be given.
+     */
+    public static long distributePowerFairly (NeighborCache neighbors, EnergyTransaction transaction, long budget) {
+        
+        final FaceScratch scratch = SCRATCH.get();
+        int count = 0;
+        
+        for (final EnumFacing side : EnumFacing.VALUES) {
+            
+            final IEnergyConsumer consumer = neighbors.getConsumer(side);
+            
+            if (consumer == null)
+                continue;
+                
+            final int entry = transaction.reserveGive(consumer, budget);
+            scratch.entries[count] = entry;
+            scratch.demands[count++] = transaction.getReserved(entry);
+        }
+        
+        final long allocated = allocateProportionally(budget, scratch.demands, count, scratch.shares);
+        
+        for (int i = 0; i < count; i++)
+            transaction.setAmount(scratch.entries[i], scratch.shares[i]);
+            
+        return allocated;
+    }
+    
+    /**
+     * Attempts to consume power from all producers held in a neighbor cache. This does the
+     * same thing as {@link #consumePowerFromAllFaces(World, BlockPos, long, boolean)}, without
+     * looking the neighbors up in the world.
+     * 
+     * @param neighbors The neighbor cache of the tile taking power.
+     * @param amount The amount of power to request from each individual face.
+     * @param simulated Whether or not this is being ran as part of a simulation.
+     * @return The amount of power that was successfully consumed.
+     */
+    public static long consumePowerFromAllFaces (NeighborCache neighbors, long amount, boolean simulated) {
+        
+        long recievedPower = 0L;
+        
+        for (final EnumFacing side : EnumFacing.VALUES) {
+            
+            final IEnergyProducer producer = neighbors.getProducer(side);
+            
+            if (producer != null)
+                recievedPower += producer.takePower(amount, simulated);
+        }
+        
+        return recievedPower;
+    }
+    
+    /**
+     * Splits an amount of power between several parties, in proportion to how much each of
+     * them is able to move. No party is given more than its own limit. Whatever is left over
+     * from rounding goes to the first parties in the array, so the same inputs always give the
+     * same split.
+     * 
+     * @param total The amount of power to split.
+     * @param limits The most power each party is able to move.
+     * @param count The amount of parties in the arrays.
+     * @param shares The array to write the share of each party into.
+     * @return The amount of power that was handed out. This is less than the total only if
+     *         the limits add up to less than the total.
+     */
+    public static long allocateProportionally (long total, long[] limits, int count, long[] shares) {
+        
+        long sum = 0L;
+        
+        for (int i = 0; i < count; i++)
+            sum = saturatedAdd(sum, Math.max(0L, limits[i]));
+            
+        if (total >= sum && sum < Long.MAX_VALUE) {
+            
+            System.arraycopy(limits, 0, shares, 0, count);
+            return sum;
+        }
+        
+        long assigned = 0L;
+        final double scale = total > 0 ? (double) total / sum : 0d;
+        
+        for (int i = 0; i < count; i++) {
+            
+            shares[i] = Math.max(0L, Math.min(limits[i], (long) (limits[i] * scale)));
+            assigned += shares[i];
+        }
+        
+        for (int i = 0; i < count && assigned < total; i++) {
+            
+            final long extra = Math.max(0L, Math.min(total - assigned, limits[i] - shares[i]));
+            shares[i] += extra;
+            assigned += extra;
+        }
+        
+        for (int i = count - 1; i >= 0 && assigned > total; i--) {
+            
+            final long excess = Math.min(assigned - total, shares[i]);
+            shares[i] -= excess;
+            assigned -= excess;
+        }
+        
+        return assigned;
+    }
+    
+    /**
+     * Adds two amounts of power, stopping at {@link Long#MAX_VALUE} instead of wrapping around.
+     * Endpoints that are simulated with an unlimited request can answer with amounts so large
+     * that adding them up would overflow.
+     * 
+     * @param first The first amount. Should not be negative.
+     * @param second The second amount. Should not be negative.
+     * @return The sum of both amounts, or {@link Long#MAX_VALUE} if it does not fit.
+     */
+    public static long saturatedAdd (long first, long second) {
+        
+        final long sum = first + second;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+    
     /**
      * Checks if a capability is for the Joule holder.
      * 
@@ -353,6 +613,31 @@ public class JouleUtils {
         return isHolderCapability(capability) || isConsumerCapability(capability) || isProducerCapability(capability);
     }
     
+    /**
+     * Per thread storage used while splitting power between the faces of a block.
+     */
+    private static class FaceScratch {
+        
+        private final EnergyTransaction transaction = new EnergyTransaction();
+        private final int[] entries = new int[EnumFacing.VALUES.length];
+        private final long[] demands = new long[EnumFacing.VALUES.length];
+        private final long[] shares = new long[EnumFacing.VALUES.length];
+    }
+    
+    /**
+     * A callback for {@link JouleUtils#forEachConnected(Capability, World, BlockPos, IConnectedVisitor)}.
+     */
+    public interface IConnectedVisitor<T> {
+        
+        /**
+         * Called for every capability found around a BlockPos.
+         * 
+         * @param capability The capability that was found.
+         * @param side The side of the BlockPos the capability is on.
+         */
+        void visit (T capability, EnumFacing side);
+    }
+    
     /**
      * Generates tooltip data for an ItemStack that has the IJouleHolder interface.
      * Additionally, if the holder is a BaseJouleContainer, input/output rates will be shown.
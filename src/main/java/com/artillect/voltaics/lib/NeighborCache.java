@@ -0,0 +1,250 @@
+package com.artillect.voltaics.lib;
+
+import com.artillect.voltaics.capability.EnergyCapabilities;
+import com.artillect.voltaics.power.IEnergyConsumer;
+import com.artillect.voltaics.power.IEnergyHolder;
+import com.artillect.voltaics.power.IEnergyProducer;
+import com.artillect.voltaics.tileentity.TileEntityBase;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Remembers the tile entities and Joule capabilities touching a tile entity, so that they only
+ * have to be looked up in the world after something next to the tile has changed. Each face
+ * is resolved the first time it is asked for and is kept until it is invalidated, or until the
+ * cached tile is itself invalidated or, for tiles from other mods, no longer in the world.
+ *
+ * On the server, Voltaics tiles are found through the {@link EnergyTileRegistry} of the
+ * world, and only other tiles are looked up in the world itself. Voltaics tiles tell their
+ * neighbors when they are loaded or unloaded, since chunks loading and unloading do not cause
+ * neighbor updates. Faces touching a block that is not loaded are not kept, so they are looked
+ * up again once it is. The client does not receive neighbor updates, so faces are always looked
+ * up again there.
+ */
+public class NeighborCache {
+
+    /**
+     * The tile entity whose neighbors are being cached.
+     */
+    private final TileEntity owner;
+
+    /**
+     * The tile entity touching each face, indexed by {@link EnumFacing#getIndex()}.
+     */
+    private final TileEntity[] tiles = new TileEntity[EnumFacing.VALUES.length];
+
+    /**
+     * The consumer capability of the tile touching each face.
+     */
+    private final IEnergyConsumer[] consumers = new IEnergyConsumer[EnumFacing.VALUES.length];
+
+    /**
+     * The producer capability of the tile touching each face.
+     */
+    private final IEnergyProducer[] producers = new IEnergyProducer[EnumFacing.VALUES.length];
+
+    /**
+     * The holder capability of the tile touching each face.
+     */
+    private final IEnergyHolder[] holders = new IEnergyHolder[EnumFacing.VALUES.length];
+
+    /**
+     * A bit mask of the faces that are currently up to date.
+     */
+    private int resolved;
+
+    /**
+     * A bit mask of the faces whose producer or consumer changed when they were last resolved.
+     */
+    private int changed;
+
+    /**
+     * Constructor for creating a cache for the neighbors of a tile entity.
+     *
+     * @param owner The tile entity whose neighbors should be cached.
+     */
+    public NeighborCache(TileEntity owner) {
+
+        this.owner = owner;
+    }
+
+    /**
+     * Forgets every face. They will be looked up again the next time they are used.
+     */
+    public void invalidate () {
+
+        this.resolved = 0;
+    }
+
+    /**
+     * Forgets a single face. It will be looked up again the next time it is used.
+     *
+     * @param side The face to forget.
+     */
+    public void invalidate (EnumFacing side) {
+
+        this.resolved &= ~(1 << side.getIndex());
+    }
+
+    /**
+     * Forgets the face that touches a changed block. If the block does not touch the owner,
+     * every face is forgotten.
+     *
+     * @param neighbor The position of the block that changed.
+     */
+    public void invalidate (BlockPos neighbor) {
+
+        final BlockPos pos = this.owner.getPos();
+        final int dx = neighbor.getX() - pos.getX();
+        final int dy = neighbor.getY() - pos.getY();
+        final int dz = neighbor.getZ() - pos.getZ();
+
+        if (Math.abs(dx) + Math.abs(dy) + Math.abs(dz) == 1)
+            this.invalidate(EnumFacing.getFacingFromVector(dx, dy, dz));
+
+        else
+            this.invalidate();
+    }
+
+    /**
+     * Checks if the producer or consumer touching any face changed since this was last called.
+     * Faces are only compared when they are resolved again.
+     *
+     * @return True if an endpoint touching the owner changed.
+     */
+    public boolean pollEndpointsChanged () {
+
+        final boolean result = this.changed != 0;
+        this.changed = 0;
+        return result;
+    }
+
+    /**
+     * Gets the tile entity touching a face.
+     *
+     * @param side The face to check.
+     * @return The tile entity touching the face, or null if there is none.
+     */
+    public TileEntity getTile (EnumFacing side) {
+
+        return this.tiles[this.resolve(side)];
+    }
+
+    /**
+     * Gets the Joule consumer touching a face.
+     *
+     * @param side The face to check.
+     * @return The consumer touching the face, or null if there is none.
+     */
+    public IEnergyConsumer getConsumer (EnumFacing side) {
+
+        return this.consumers[this.resolve(side)];
+    }
+
+    /**
+     * Gets the Joule producer touching a face.
+     *
+     * @param side The face to check.
+     * @return The producer touching the face, or null if there is none.
+     */
+    public IEnergyProducer getProducer (EnumFacing side) {
+
+        return this.producers[this.resolve(side)];
+    }
+
+    /**
+     * Gets the Joule holder touching a face.
+     *
+     * @param side The face to check.
+     * @return The holder touching the face, or null if there is none.
+     */
+    public IEnergyHolder getHolder (EnumFacing side) {
+
+        return this.holders[this.resolve(side)];
+    }
+
+    /**
+     * Makes sure a face is up to date, looking it up in the world if it is not.
+     *
+     * @param side The face to resolve.
+     * @return The index of the face in the cache arrays.
+     */
+    private int resolve (EnumFacing side) {
+
+        final int index = side.getIndex();
+        final TileEntity cached = this.tiles[index];
+
+        if ((this.resolved & (1 << index)) != 0 && (cached == null || this.isStillLoaded(cached)))
+            return index;
+
+        final World world = this.owner.getWorld();
+        final EnumFacing face = side.getOpposite();
+        TileEntity tile = null;
+        boolean loaded = world != null && !world.isRemote;
+
+        if (loaded)
+            tile = EnergyTileRegistry.get(world).getTile(EnergyTileRegistry.offset(this.owner.getPos().toLong(), side));
+
+        if (tile == null && world != null) {
+
+            final BlockPos pos = this.owner.getPos().offset(side);
+            final boolean blockLoaded = world.isBlockLoaded(pos);
+            loaded &= blockLoaded;
+            tile = blockLoaded ? world.getTileEntity(pos) : null;
+
+            //a Voltaics tile missing from the registry has not been loaded yet or is being unloaded
+            if (tile instanceof TileEntityBase && !world.isRemote) {
+
+                tile = null;
+                loaded = false;
+            }
+        }
+
+        if (tile != null && tile.isInvalid())
+            tile = null;
+
+        final IEnergyConsumer consumer = tile != null && JouleUtils.isJouleConsumer(tile, face) ? JouleUtils.getJouleConsumer(tile, face) : null;
+        final IEnergyProducer producer = tile != null && JouleUtils.isJouleProducer(tile, face) ? JouleUtils.getJouleProducer(tile, face) : null;
+
+        if ((consumer != null || producer != null || this.consumers[index] != null || this.producers[index] != null)
+                && (tile != this.tiles[index] || consumer != this.consumers[index] || producer != this.producers[index]))
+            this.changed |= 1 << index;
+
+        this.tiles[index] = tile;
+        this.consumers[index] = consumer;
+        this.producers[index] = producer;
+        this.holders[index] = tile != null && JouleUtils.isJouleHolder(tile, face) ? JouleUtils.getJouleHolder(tile, face) : null;
+
+        if (loaded)
+            this.resolved |= 1 << index;
+        else
+            this.resolved &= ~(1 << index);
+
+        return index;
+    }
+
+    /**
+     * Checks if a cached tile is still in the world. Voltaics tiles tell their neighbors when
+     * they are unloaded, but other tiles do not, and a tile in an unloaded chunk is not
+     * invalidated. Those are looked up again to make sure they are still the tile at their
+     * position.
+     *
+     * @param tile The cached tile to check.
+     * @return True if the tile can still be used.
+     */
+    private boolean isStillLoaded (TileEntity tile) {
+
+        if (tile.isInvalid())
+            return false;
+
+        if (tile instanceof TileEntityBase)
+            return true;
+
+        final World world = tile.getWorld();
+        final BlockPos pos = tile.getPos();
+        return world != null && world.isBlockLoaded(pos) && world.getTileEntity(pos) == tile;
+    }
+}
@@ -0,0 +1,77 @@
+package com.artillect.voltaics.lib;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+import net.minecraft.world.World;
+
+/**
+ * Holds one instance of something for every loaded world, such as the managers that tick
+ * Voltaics machines. Worlds are held weakly, so a world that is never unloaded properly can
+ * still be garbage collected.
+ *
+ * @param <T> The type kept for each world.
+ */
+public class PerWorld<T> {
+
+    /**
+     * The instance for every world that has one.
+     */
+    private final Map<World, T> values = new WeakHashMap<World, T>();
+
+    /**
+     * Creates the instance for a world the first time it is asked for.
+     */
+    private final Function<World, T> factory;
+
+    /**
+     * Constructor for a holder that creates instances with a factory.
+     *
+     * @param factory Creates the instance for a world.
+     */
+    public PerWorld(Function<World, T> factory) {
+
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the instance for a world, creating it if needed.
+     *
+     * @param world The world to get the instance for.
+     * @return The instance for the world.
+     */
+    public T get (World world) {
+
+        T value = this.values.get(world);
+
+        if (value == null) {
+
+            value = this.factory.apply(world);
+            this.values.put(world, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Gets the instance for a world, without creating one.
+     *
+     * @param world The world to get the instance for.
+     * @return The instance for the world, or null if it does not have one.
+     */
+    public T getIfPresent (World world) {
+
+        return this.values.get(world);
+    }
+
+    /**
+     * Drops the instance of a world that is being unloaded.
+     *
+     * @param world The world being unloaded.
+     */
+    public void remove (World world) {
+
+        this.values.remove(world);
+    }
+}
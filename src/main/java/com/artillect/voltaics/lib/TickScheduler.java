@@ -0,0 +1,217 @@
+package com.artillect.voltaics.lib;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.artillect.voltaics.tileentity.TileEntityBase;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.ITickable;
+import net.minecraft.world.World;
+
+/**
+ * Takes idle tile entities out of the ticking list of a world and puts them back when they
+ * have something to do. A tile goes to sleep when it finds that it can not move any power,
+ * and is woken up when a neighbor changes, when its stored power is changed by something
+ * else, or when the timer it was put to sleep with runs out.
+ *
+ * The ticking list of a world can not be changed while the world is ticking its tile
+ * entities, so requests are queued and applied together at the end of the world tick.
+ */
+public class TickScheduler {
+
+    /**
+     * The schedulers for every loaded server world.
+     */
+    private static final PerWorld<TickScheduler> SCHEDULERS = new PerWorld<TickScheduler>(TickScheduler::new);
+
+    /**
+     * The world this scheduler belongs to.
+     */
+    private final World world;
+
+    /**
+     * Tiles that have been taken out of the ticking list.
+     */
+    private final Set<TileEntity> sleeping = Collections.newSetFromMap(new IdentityHashMap<TileEntity, Boolean>());
+
+    /**
+     * Tiles that want to be taken out of the ticking list at the end of the tick.
+     */
+    private final Set<TileEntity> toSleep = Collections.newSetFromMap(new IdentityHashMap<TileEntity, Boolean>());
+
+    /**
+     * Tiles that want to be put back into the ticking list at the end of the tick.
+     */
+    private final Set<TileEntity> toWake = Collections.newSetFromMap(new IdentityHashMap<TileEntity, Boolean>());
+
+    /**
+     * Timers for sleeping tiles, ordered by the tick they should be woken up on.
+     */
+    private final PriorityQueue<Alarm> alarms = new PriorityQueue<Alarm>();
+
+    /**
+     * The pending timer of each sleeping tile, so it can be cancelled when the tile is woken up
+     * early or forgotten.
+     */
+    private final Map<TileEntity, Alarm> pending = new IdentityHashMap<TileEntity, Alarm>();
+
+    private TickScheduler(World world) {
+
+        this.world = world;
+    }
+
+    /**
+     * Gets the scheduler for a world, creating it if needed. Should only be used on the server.
+     *
+     * @param world The world to get the scheduler for.
+     * @return The tick scheduler for the world.
+     */
+    public static TickScheduler get (World world) {
+
+        return SCHEDULERS.get(world);
+    }
+
+    /**
+     * Applies the queued requests of a world, if it has a scheduler.
+     *
+     * @param world The world being ticked.
+     */
+    public static void tickWorld (World world) {
+
+        final TickScheduler scheduler = SCHEDULERS.getIfPresent(world);
+
+        if (scheduler != null)
+            scheduler.tick();
+    }
+
+    /**
+     * Drops the scheduler of a world that is being unloaded.
+     *
+     * @param world The world being unloaded.
+     */
+    public static void unloadWorld (World world) {
+
+        SCHEDULERS.remove(world);
+    }
+
+    /**
+     * Queues a tile to be taken out of the ticking list.
+     *
+     * @param tile The tile to put to sleep.
+     * @param ticks The amount of ticks after which the tile should be woken up anyway, or 0 to
+     *        sleep until something else wakes it.
+     */
+    public void sleep (TileEntityBase tile, int ticks) {
+
+        if (!this.toWake.remove(tile))
+            this.toSleep.add(tile);
+
+        this.cancelAlarm(tile);
+
+        if (ticks > 0) {
+
+            final Alarm alarm = new Alarm(this.world.getTotalWorldTime() + ticks, tile);
+            this.alarms.add(alarm);
+            this.pending.put(tile, alarm);
+        }
+    }
+
+    /**
+     * Queues a tile to be put back into the ticking list.
+     *
+     * @param tile The tile to wake up.
+     */
+    public void wake (TileEntityBase tile) {
+
+        this.cancelAlarm(tile);
+
+        if (!this.toSleep.remove(tile))
+            this.toWake.add(tile);
+    }
+
+    /**
+     * Forgets about a tile that has been removed or unloaded.
+     *
+     * @param tile The tile to forget.
+     */
+    public void forget (TileEntityBase tile) {
+
+        this.sleeping.remove(tile);
+        this.toSleep.remove(tile);
+        this.toWake.remove(tile);
+        this.cancelAlarm(tile);
+    }
+
+    /**
+     * Cancels the pending timer of a tile, if it has one. The timer is left in the queue and
+     * skipped when it comes up, but no longer holds on to the tile.
+     *
+     * @param tile The tile to cancel the timer of.
+     */
+    private void cancelAlarm (TileEntityBase tile) {
+
+        final Alarm alarm = this.pending.remove(tile);
+
+        if (alarm != null)
+            alarm.tile = null;
+    }
+
+    private void tick () {
+
+        final long time = this.world.getTotalWorldTime();
+
+        while (!this.alarms.isEmpty() && this.alarms.peek().time <= time) {
+
+            final TileEntityBase tile = this.alarms.poll().tile;
+
+            if (tile == null)
+                continue;
+
+            this.pending.remove(tile);
+
+            if (!tile.isInvalid())
+                tile.wake();
+        }
+
+        if (!this.toSleep.isEmpty()) {
+
+            this.world.tickableTileEntities.removeAll(this.toSleep);
+            this.sleeping.addAll(this.toSleep);
+            this.toSleep.clear();
+        }
+
+        if (!this.toWake.isEmpty()) {
+
+            for (final TileEntity tile : this.toWake)
+                if (this.sleeping.remove(tile) && !tile.isInvalid() && tile instanceof ITickable)
+                    this.world.tickableTileEntities.add(tile);
+
+            this.toWake.clear();
+        }
+    }
+
+    /**
+     * A request to wake a tile up on a certain tick.
+     */
+    private static class Alarm implements Comparable<Alarm> {
+
+        private final long time;
+        private TileEntityBase tile;
+
+        private Alarm(long time, TileEntityBase tile) {
+
+            this.time = time;
+            this.tile = tile;
+        }
+
+        @Override
+        public int compareTo (Alarm other) {
+
+            return Long.compare(this.time, other.time);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.artillect.voltaics.network;
 
 import com.artillect.voltaics.Voltaics;
 import com.artillect.voltaics.network.message.MessageTEUpdate;
+import com.artillect.voltaics.network.message.MessageTileDelta;
 
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper;
@@ -14,5 +15,6 @@ public class PacketHandler {
 
     public static void registerMessages(){
         INSTANCE.registerMessage(MessageTEUpdate.MessageHolder.class, MessageTEUpdate.class,id ++,Side.CLIENT);
+        INSTANCE.registerMessage(MessageTileDelta.MessageHolder.class, MessageTileDelta.class,id ++,Side.CLIENT);
        }
 }
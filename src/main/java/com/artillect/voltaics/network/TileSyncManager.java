@@ -0,0 +1,342 @@
+package com.artillect.voltaics.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.artillect.voltaics.VoltaicsConfig;
+import com.artillect.voltaics.item.ItemThermometer;
+import com.artillect.voltaics.item.ItemVoltmeter;
+import com.artillect.voltaics.lib.EnergyTileRegistry;
+import com.artillect.voltaics.lib.PerWorld;
+import com.artillect.voltaics.network.message.MessageTEUpdate;
+import com.artillect.voltaics.network.message.MessageTileDelta;
+import com.artillect.voltaics.tileentity.TileEntityBase;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.item.Item;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumHand;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * Collects the Voltaics tiles in a world that have something to sync, and sends their changes
+ * to the players watching them at the end of the tick. Tiles are grouped by chunk and each
+ * tile's changes are worked out once. Every player then gets a single message with the changes
+ * of every chunk they are watching, so a large grid changing every tick costs one packet per
+ * player instead of one per tile.
+ *
+ * Readout fields, such as stored power and temperature, change nearly every tick and are only
+ * needed by players inspecting a machine. They are left out of the per-tile changes and are
+ * instead sent to each player holding a voltmeter or thermometer, for the machines near them,
+ * at most once every few ticks. Each player's readouts are spread over different ticks, so the
+ * traffic stays flat no matter how much power is flowing.
+ */
+public class TileSyncManager {
+
+    /**
+     * The managers for every loaded server world.
+     */
+    private static final PerWorld<TileSyncManager> MANAGERS = new PerWorld<TileSyncManager>(world -> new TileSyncManager((WorldServer) world));
+
+    /**
+     * The world this manager belongs to.
+     */
+    private final WorldServer world;
+
+    /**
+     * The tiles waiting to be synced, grouped by the packed position of their chunk.
+     */
+    private final Long2ObjectLinkedOpenHashMap<List<TileEntityBase>> chunks = new Long2ObjectLinkedOpenHashMap<List<TileEntityBase>>();
+
+    /**
+     * Every tile waiting to be synced, so a tile is only queued once per tick.
+     */
+    private final ReferenceOpenHashSet<TileEntityBase> queued = new ReferenceOpenHashSet<TileEntityBase>();
+
+    /**
+     * The readouts last sent to each inspecting player, by packed tile position. Each array holds
+     * the value, rate and time each field was last sent at, followed by the mask of the fields
+     * that were sent.
+     */
+    private final Map<EntityPlayerMP, Long2ObjectOpenHashMap<long[]>> readouts = new HashMap<EntityPlayerMP, Long2ObjectOpenHashMap<long[]>>();
+
+    private TileSyncManager(WorldServer world) {
+
+        this.world = world;
+    }
+
+    /**
+     * Gets the manager for a world, creating it if needed. Should only be used on the server.
+     *
+     * @param world The world to get the manager for.
+     * @return The tile sync manager for the world.
+     */
+    public static TileSyncManager get (World world) {
+
+        return MANAGERS.get(world);
+    }
+
+    /**
+     * Sends the queued changes of a world, and the readouts of any inspecting players that are
+     * due this tick, if it has a manager. Every world with synced tiles has one, since tiles sync
+     * when they are loaded.
+     *
+     * @param world The world being ticked.
+     */
+    public static void flushWorld (World world) {
+
+        final TileSyncManager manager = MANAGERS.getIfPresent(world);
+
+        if (manager != null)
+            manager.flush();
+    }
+
+    /**
+     * Drops the manager of a world that is being unloaded.
+     *
+     * @param world The world being unloaded.
+     */
+    public static void unloadWorld (World world) {
+
+        MANAGERS.remove(world);
+    }
+
+    /**
+     * Sends the full synced state of every Voltaics tile in a chunk to a player that has just
+     * started watching it. The chunk itself has already been sent, so the tiles exist on the
+     * client by the time the state arrives.
+     *
+     * @param player The player watching the chunk.
+     * @param pos The position of the chunk.
+     */
+    public static void sendChunkState (EntityPlayerMP player, ChunkPos pos) {
+
+        final Chunk chunk = player.getServerWorld().getChunkProvider().getLoadedChunk(pos.chunkXPos, pos.chunkZPos);
+
+        if (chunk == null)
+            return;
+
+        for (final TileEntity entity : chunk.getTileEntityMap().values()) {
+
+            if (entity instanceof TileEntityBase && !entity.isInvalid() && ((TileEntityBase) entity).hasSyncFields())
+                PacketHandler.INSTANCE.sendTo(new MessageTEUpdate((TileEntityBase) entity), player);
+        }
+    }
+
+    /**
+     * Queues a tile to have its changes sent at the end of the tick.
+     *
+     * @param tile The tile to sync.
+     */
+    public void queue (TileEntityBase tile) {
+
+        if (!this.queued.add(tile))
+            return;
+
+        final long key = EnergyTileRegistry.pack(tile.getPos().getX() >> 4, 0, tile.getPos().getZ() >> 4);
+        List<TileEntityBase> tiles = this.chunks.get(key);
+
+        if (tiles == null) {
+
+            tiles = new ArrayList<TileEntityBase>();
+            this.chunks.put(key, tiles);
+        }
+
+        tiles.add(tile);
+    }
+
+    /**
+     * Gets the readout fields a player wants to see, from the instruments they are holding.
+     *
+     * @param player The player to check.
+     * @return A bit mask of the readout fields the player wants.
+     */
+    private static int getInspectedFields (EntityPlayer player) {
+
+        int fields = 0;
+
+        for (final EnumHand hand : EnumHand.values()) {
+
+            final Item item = player.getHeldItem(hand).getItem();
+
+            if (item instanceof ItemVoltmeter)
+                fields |= 1 << TileEntityBase.SYNC_POWER;
+
+            else if (item instanceof ItemThermometer)
+                fields |= 1 << TileEntityBase.SYNC_TEMPERATURE;
+        }
+
+        return fields;
+    }
+
+    /**
+     * Works out the changes of every queued tile and sends them, along with any readouts that are
+     * due, to the players watching them.
+     */
+    private void flush () {
+
+        this.readouts.keySet().retainAll(this.world.playerEntities);
+
+        final List<MessageTileDelta> deltas = new ArrayList<MessageTileDelta>();
+        final List<TileEntityBase> owners = new ArrayList<TileEntityBase>();
+        final long[] values = new long[TileEntityBase.SYNC_SLOTS];
+
+        for (final List<TileEntityBase> tiles : this.chunks.values()) {
+
+            final MessageTileDelta delta = new MessageTileDelta();
+
+            for (final TileEntityBase tile : tiles) {
+
+                if (tile.isInvalid())
+                    continue;
+
+                final int mask = tile.collectSyncDelta(values);
+
+                if (mask != 0)
+                    delta.add(tile.getPos(), mask, values);
+            }
+
+            if (!delta.isEmpty()) {
+
+                deltas.add(delta);
+                owners.add(tiles.get(0));
+            }
+        }
+
+        this.chunks.clear();
+        this.queued.clear();
+
+        final long time = this.world.getTotalWorldTime();
+
+        for (final EntityPlayer entity : this.world.playerEntities) {
+
+            if (!(entity instanceof EntityPlayerMP))
+                continue;
+
+            final EntityPlayerMP player = (EntityPlayerMP) entity;
+            final MessageTileDelta message = new MessageTileDelta();
+
+            for (int i = 0; i < deltas.size(); i++) {
+
+                final TileEntityBase owner = owners.get(i);
+
+                if (this.world.getPlayerChunkMap().isPlayerWatchingChunk(player, owner.getPos().getX() >> 4, owner.getPos().getZ() >> 4))
+                    message.addAll(deltas.get(i));
+            }
+
+            if ((time + player.getEntityId()) % VoltaicsConfig.readoutSyncInterval == 0)
+                this.collectReadouts(player, message, values);
+
+            if (!message.isEmpty())
+                PacketHandler.INSTANCE.sendTo(message, player);
+        }
+    }
+
+    /**
+     * Adds the readouts that changed since they were last sent to a player, for the tiles near
+     * them. Each readout is sent with the rate it changed at since it was last sent, so the
+     * client can extrapolate it until the next update. Tiles the player has moved away from are
+     * forgotten, so they are sent in full again when the player comes back.
+     *
+     * @param player The player to collect readouts for.
+     * @param message The message to add the readouts to.
+     * @param values A scratch array for the field values.
+     */
+    private void collectReadouts (EntityPlayerMP player, MessageTileDelta message, long[] values) {
+
+        final int wanted = getInspectedFields(player);
+
+        if (wanted == 0) {
+
+            this.readouts.remove(player);
+            return;
+        }
+
+        final Long2ObjectOpenHashMap<long[]> last = this.readouts.get(player);
+        final Long2ObjectOpenHashMap<long[]> sent = new Long2ObjectOpenHashMap<long[]>();
+        final int range = VoltaicsConfig.readoutSyncRange;
+        final long time = this.world.getTotalWorldTime();
+        final double rangeSq = range * range;
+
+        for (int cx = (int) Math.floor(player.posX - range) >> 4; cx <= (int) Math.floor(player.posX + range) >> 4; cx++) {
+
+            for (int cz = (int) Math.floor(player.posZ - range) >> 4; cz <= (int) Math.floor(player.posZ + range) >> 4; cz++) {
+
+                final Chunk chunk = this.world.getChunkProvider().getLoadedChunk(cx, cz);
+
+                if (chunk == null)
+                    continue;
+
+                for (final TileEntity entity : chunk.getTileEntityMap().values()) {
+
+                    if (!(entity instanceof TileEntityBase) || entity.isInvalid())
+                        continue;
+
+                    final BlockPos pos = entity.getPos();
+
+                    if (pos.distanceSqToCenter(player.posX, player.posY, player.posZ) > rangeSq)
+                        continue;
+
+                    final int fields = ((TileEntityBase) entity).collectReadout(wanted, values);
+
+                    if (fields == 0)
+                        continue;
+
+                    final long key = pos.toLong();
+                    long[] previous = last == null ? null : last.get(key);
+
+                    if (previous == null)
+                        previous = new long[TileEntityBase.SYNC_FIELDS * 3 + 1];
+
+                    final int known = (int) previous[TileEntityBase.SYNC_FIELDS * 3];
+                    int mask = 0;
+
+                    for (int field = 0; field < TileEntityBase.SYNC_FIELDS; field++) {
+
+                        if ((fields & 1 << field) == 0)
+                            continue;
+
+                        final int rateSlot = TileEntityBase.SYNC_FIELDS + field;
+                        final int timeSlot = TileEntityBase.SYNC_FIELDS * 2 + field;
+                        final boolean seen = (known & 1 << field) != 0;
+                        long rate = 0;
+
+                        if (seen && time > previous[timeSlot])
+                            rate = (values[field] - previous[field]) * TileEntityBase.SYNC_RATE_SCALE / (time - previous[timeSlot]);
+
+                        // a readout that stopped changing is sent again so the client stops extrapolating it
+                        if (!seen || previous[field] != values[field] || previous[rateSlot] != rate) {
+
+                            previous[field] = values[field];
+                            previous[rateSlot] = rate;
+                            previous[timeSlot] = time;
+                            values[rateSlot] = rate;
+                            mask |= 1 << field;
+
+                            if (rate != 0)
+                                mask |= 1 << rateSlot;
+                        }
+                    }
+
+                    previous[TileEntityBase.SYNC_FIELDS * 3] = known | fields;
+                    sent.put(key, previous);
+
+                    if (mask != 0)
+                        message.add(pos, mask, values);
+                }
+            }
+        }
+
+        this.readouts.put(player, sent);
+    }
+}
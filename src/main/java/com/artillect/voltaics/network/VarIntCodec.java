@@ -0,0 +1,42 @@
+package com.artillect.voltaics.network;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Writes numbers into a ByteBuf using as few bytes as they need. Each byte holds seven bits of
+ * the number and a flag saying if another byte follows. Signed numbers are zigzag encoded
+ * first, so small negative numbers stay small.
+ */
+public class VarIntCodec {
+	public static void writeVarLong(ByteBuf buf, long value){
+		while ((value & ~0x7FL) != 0){
+			buf.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf.writeByte((int) value);
+	}
+
+	public static long readVarLong(ByteBuf buf){
+		long value = 0;
+		int shift = 0;
+		byte read;
+		do {
+			if (shift >= 64){
+				throw new IllegalArgumentException("VarLong is too long");
+			}
+			read = buf.readByte();
+			value |= (long) (read & 0x7F) << shift;
+			shift += 7;
+		} while ((read & 0x80) != 0);
+		return value;
+	}
+
+	public static void writeSignedVarLong(ByteBuf buf, long value){
+		writeVarLong(buf, value << 1 ^ value >> 63);
+	}
+
+	public static long readSignedVarLong(ByteBuf buf){
+		long value = readVarLong(buf);
+		return value >>> 1 ^ -(value & 1);
+	}
+}
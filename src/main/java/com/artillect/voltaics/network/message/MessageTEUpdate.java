@@ -1,51 +1,75 @@
 package com.artillect.voltaics.network.message;
 
+import com.artillect.voltaics.network.VarIntCodec;
+import com.artillect.voltaics.tileentity.TileEntityBase;
+
 import io.netty.buffer.ByteBuf;
 import net.minecraft.client.Minecraft;
-import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
-import net.minecraftforge.fml.common.FMLCommonHandler;
-import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraft.world.World;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
+/**
+ * Carries every synced field of a single tile, whether it changed or not. Sent for every tile
+ * in a chunk when a player starts watching it, since readout fields are otherwise only sent to
+ * players inspecting the tile. The fields are
+ * written straight into the buffer as the packed position, a mask of the fields the tile has
+ * and then each field as a varint, and applied to the tile as they are read back.
+ */
 public class MessageTEUpdate implements IMessage {
-	public NBTTagCompound tag = new NBTTagCompound();
+	private long pos;
+	private int mask;
+	private final long[] values = new long[TileEntityBase.SYNC_SLOTS];
 	
 	public MessageTEUpdate(){
 		//
 	}
 	
-	public MessageTEUpdate(TileEntity tile){
-		this.tag = tile.getUpdateTag();
+	public MessageTEUpdate(TileEntityBase tile){
+		this.pos = tile.getPos().toLong();
+		this.mask = tile.collectSyncState(values);
 	}
 	
 	@Override
 	public void fromBytes(ByteBuf buf) {
-		tag = ByteBufUtils.readTag(buf);
+		pos = buf.readLong();
+		mask = buf.readUnsignedByte();
+		for (int field = 0; field < TileEntityBase.SYNC_SLOTS; field++){
+			if ((mask & 1 << field) != 0){
+				values[field] = VarIntCodec.readSignedVarLong(buf);
+			}
+		}
 	}
 
 	@Override
 	public void toBytes(ByteBuf buf) {
-		ByteBufUtils.writeTag(buf, tag);
+		buf.writeLong(pos);
+		buf.writeByte(mask);
+		for (int field = 0; field < TileEntityBase.SYNC_SLOTS; field++){
+			if ((mask & 1 << field) != 0){
+				VarIntCodec.writeSignedVarLong(buf, values[field]);
+			}
+		}
+	}
+
+	private void apply(World world){
+		TileEntity tile = world.getTileEntity(BlockPos.fromLong(pos));
+		if (tile instanceof TileEntityBase){
+			((TileEntityBase) tile).applySyncDelta(mask, values);
+		}
 	}
 
-    public static class MessageHolder implements IMessageHandler<MessageTEUpdate,IMessage>
-    {
-    	@SideOnly(Side.CLIENT)
-        @Override
-        public IMessage onMessage(final MessageTEUpdate message, final MessageContext ctx) {
-//    		Minecraft.getMinecraft().addScheduledTask(()-> {
-//	    		if ((Minecraft.getMinecraft().thePlayer.getEntityWorld()).getTileEntity(new BlockPos(message.tag.getInteger("x"),message.tag.getInteger("y"),message.tag.getInteger("z"))) != null){
-//	    			Minecraft.getMinecraft().thePlayer.getEntityWorld().getTileEntity(new BlockPos(message.tag.getInteger("x"),message.tag.getInteger("y"),message.tag.getInteger("z"))).readFromNBT(message.tag);
-//	    			Minecraft.getMinecraft().thePlayer.getEntityWorld().getTileEntity(new BlockPos(message.tag.getInteger("x"),message.tag.getInteger("y"),message.tag.getInteger("z"))).markDirty();
-//	    		}
-//	    	});
-    		return null;
-	    }
-    }
-}
\ No newline at end of file
+	public static class MessageHolder implements IMessageHandler<MessageTEUpdate, IMessage> {
+		@SideOnly(Side.CLIENT)
+		@Override
+		public IMessage onMessage(final MessageTEUpdate message, final MessageContext ctx) {
+			Minecraft.getMinecraft().addScheduledTask(() -> message.apply(Minecraft.getMinecraft().world));
+			return null;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.artillect.voltaics.network.message;
+
+import com.artillect.voltaics.network.VarIntCodec;
+import com.artillect.voltaics.tileentity.TileEntityBase;
+
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.client.Minecraft;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
+
+/**
+ * Carries the synced fields of one or more tiles that changed since their last sync. Each
+ * tile is sent as its packed position, followed by a bit mask of the fields that are included
+ * and then each of those fields as a varint, so a typical tile is only a handful of bytes.
+ * Readout fields can also carry the rate they are changing at, in the slots after the fields.
+ */
+public class MessageTileDelta implements IMessage {
+	private final LongArrayList positions = new LongArrayList();
+	private final IntArrayList masks = new IntArrayList();
+	//only the slots in each mask, in slot order
+	private final LongArrayList values = new LongArrayList();
+
+	public MessageTileDelta(){
+		//
+	}
+
+	public void add(BlockPos pos, int mask, long[] fieldValues){
+		positions.add(pos.toLong());
+		masks.add(mask);
+		for (int field = 0; field < TileEntityBase.SYNC_SLOTS; field++){
+			if ((mask & 1 << field) != 0){
+				values.add(fieldValues[field]);
+			}
+		}
+	}
+
+	public void addAll(MessageTileDelta other){
+		positions.addAll(other.positions);
+		masks.addAll(other.masks);
+		values.addAll(other.values);
+	}
+
+	public boolean isEmpty(){
+		return positions.isEmpty();
+	}
+
+	@Override
+	public void fromBytes(ByteBuf buf) {
+		int count = (int) VarIntCodec.readVarLong(buf);
+		for (int i = 0; i < count; i++){
+			positions.add(buf.readLong());
+			int mask = (int) VarIntCodec.readVarLong(buf);
+			masks.add(mask);
+			for (int field = 0; field < TileEntityBase.SYNC_SLOTS; field++){
+				if ((mask & 1 << field) != 0){
+					values.add(VarIntCodec.readSignedVarLong(buf));
+				}
+			}
+		}
+	}
+
+	@Override
+	public void toBytes(ByteBuf buf) {
+		VarIntCodec.writeVarLong(buf, positions.size());
+		int value = 0;
+		for (int i = 0; i < positions.size(); i++){
+			buf.writeLong(positions.getLong(i));
+			int mask = masks.getInt(i);
+			VarIntCodec.writeVarLong(buf, mask);
+			for (int field = 0; field < TileEntityBase.SYNC_SLOTS; field++){
+				if ((mask & 1 << field) != 0){
+					VarIntCodec.writeSignedVarLong(buf, values.getLong(value++));
+				}
+			}
+		}
+	}
+
+	private void apply(World world){
+		long[] fieldValues = new long[TileEntityBase.SYNC_SLOTS];
+		int value = 0;
+		for (int i = 0; i < positions.size(); i++){
+			int mask = masks.getInt(i);
+			for (int field = 0; field < TileEntityBase.SYNC_SLOTS; field++){
+				if ((mask & 1 << field) != 0){
+					fieldValues[field] = values.getLong(value++);
+				}
+			}
+			TileEntity tile = world.getTileEntity(BlockPos.fromLong(positions.getLong(i)));
+			if (tile instanceof TileEntityBase){
+				((TileEntityBase) tile).applySyncDelta(mask, fieldValues);
+			}
+		}
+	}
+
+	public static class MessageHolder implements IMessageHandler<MessageTileDelta, IMessage> {
+		@SideOnly(Side.CLIENT)
+		@Override
+		public IMessage onMessage(final MessageTileDelta message, final MessageContext ctx) {
+			Minecraft.getMinecraft().addScheduledTask(() -> message.apply(Minecraft.getMinecraft().world));
+			return null;
+		}
+	}
+}
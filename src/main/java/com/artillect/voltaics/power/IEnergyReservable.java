@@ -0,0 +1,49 @@
+package com.artillect.voltaics.power;
+
+/**
+ * An optional extension for consumers and producers that can hold power or free space for a
+ * transaction. Power reserved for output can not be taken by anyone else, and space reserved
+ * for input can not be filled by anyone else, until the reservation is settled. A reservation
+ * therefore tells the caller exactly what will be moved later, without a simulation and
+ * without the holder changing in between.
+ *
+ * Every reservation must be settled once, with the amount that was reserved.
+ */
+public interface IEnergyReservable {
+
+    /**
+     * Reserves free space for power that will be given later.
+     *
+     * @param power The amount of power that may be given.
+     * @return The amount of space that was reserved.
+     */
+    long reserveInput (long power);
+
+    /**
+     * Reserves stored power that will be taken later.
+     *
+     * @param power The amount of power that may be taken.
+     * @return The amount of power that was reserved.
+     */
+    long reserveOutput (long power);
+
+    /**
+     * Settles a reservation made by {@link #reserveInput(long)}, giving some or all of the
+     * reserved amount. The rest of the space is freed.
+     *
+     * @param reserved The amount that was reserved.
+     * @param used The amount of power to give, no more than the reserved amount.
+     * @return The amount of power that was accepted.
+     */
+    long settleInput (long reserved, long used);
+
+    /**
+     * Settles a reservation made by {@link #reserveOutput(long)}, taking some or all of the
+     * reserved amount. The rest of the power is freed.
+     *
+     * @param reserved The amount that was reserved.
+     * @param used The amount of power to take, no more than the reserved amount.
+     * @return The amount of power that was taken.
+     */
+    long settleOutput (long reserved, long used);
+}
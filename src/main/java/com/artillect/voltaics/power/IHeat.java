@@ -5,4 +5,24 @@ public interface IHeat {
     long getTemperature();
     long getMeltingPoint();
     long giveHeat(long heat, boolean simulated);
+    
+    /**
+     * Gets the amount of heat needed to raise the temperature by one degree.
+     * 
+     * @return The thermal mass, at least one.
+     */
+    default long getThermalMass() {
+        return 1;
+    }
+    
+    /**
+     * Gets how well heat flows between this and the heat holders touching it. Heat only flows
+     * through a face as well as the worse conductor on either side of it allows.
+     * 
+     * @return The amount of heat moved per tick for every degree of difference, or zero if
+     *         heat should not be conducted at all.
+     */
+    default long getConductivity() {
+        return 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,471 @@
+package com.artillect.voltaics.power.grid;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.artillect.voltaics.VoltaicsConfig;
+import com.artillect.voltaics.lib.JouleUtils;
+import com.artillect.voltaics.lib.NeighborCache;
+import com.artillect.voltaics.power.IEnergyConsumer;
+import com.artillect.voltaics.power.IEnergyHolder;
+import com.artillect.voltaics.power.IEnergyProducer;
+import com.artillect.voltaics.tileentity.TileEntityLowVoltageConduit;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+
+/**
+ * A group of connected low voltage conduits that share a single energy buffer. Every conduit
+ * in the network forwards its energy capability to the network, so power held by any conduit
+ * is available at every other conduit. Each tick the network pulls power from the producers
+ * it touches and hands it to the consumers it touches, using a {@link FlowSolver}. Networks
+ * are built and ticked by the {@link ConduitNetworkManager} of their world.
+ *
+ * The conduits do not hold any energy objects of their own while they are part of a
+ * network. Each conduit is a node of the network, and the capacity and share of the buffer
+ * of every node are kept in plain arrays indexed by the node. The shares are only worked out
+ * when they are needed, such as when a conduit is saved or leaves the network.
+ *
+ * Conduits have resistance, so power delivered to a consumer costs a little more the further
+ * the consumer is from the nearest producer. The distances are found with a single search
+ * through the network whenever its endpoints are collected again, so nothing has to be
+ * searched while power is moving.
+ */
+public class ConduitNetwork implements IEnergyConsumer, IEnergyProducer, IEnergyHolder {
+
+    /**
+     * How long a network that could not move any power waits before trying again, in ticks.
+     */
+    private static final int IDLE_TICKS = 20;
+
+    /**
+     * The conduits that make up this network, indexed by node.
+     */
+    private TileEntityLowVoltageConduit[] nodes = new TileEntityLowVoltageConduit[8];
+
+    /**
+     * The capacity each node adds to the network.
+     */
+    private long[] nodeCapacity = new long[8];
+
+    /**
+     * The part of the shared buffer that belongs to each node. Only up to date while the
+     * network is settled.
+     */
+    private long[] nodeStored = new long[8];
+
+    /**
+     * The number of nodes in the network.
+     */
+    private int size;
+
+    /**
+     * Whether or not the shares in {@link #nodeStored} add up to the stored power.
+     */
+    private boolean settled = true;
+
+    /**
+     * The producers and consumers touching this network.
+     */
+    private final FlowSolver solver = new FlowSolver();
+
+    /**
+     * Whether or not the endpoints need to be collected again before the next tick.
+     */
+    private boolean endpointsDirty = true;
+
+    /**
+     * The number of conduits between each node and the nearest producer, counting the node
+     * itself. Filled in while collecting endpoints.
+     */
+    private int[] nodeDistance = new int[8];
+
+    /**
+     * Whether or not every endpoint was still valid during the last solve.
+     */
+    private boolean gatherValid;
+
+    /**
+     * The amount of Joule power stored in the shared buffer.
+     */
+    private long stored;
+
+    /**
+     * The combined capacity of every conduit in the network.
+     */
+    private long capacity;
+
+    /**
+     * The world time until which the network has nothing to do. Anything that could let the
+     * network move power again resets this to zero.
+     */
+    private long idleUntil;
+
+    /**
+     * Adds a conduit to the network, moving the power held by the conduit into the shared
+     * buffer.
+     *
+     * @param conduit The conduit to add.
+     */
+    void addConduit (TileEntityLowVoltageConduit conduit) {
+
+        this.addNode(conduit, conduit.getCapacity(), conduit.getPower());
+        this.settled = false;
+        this.markEndpointsDirty();
+    }
+
+    /**
+     * Removes a conduit from the network. The conduit takes its share of the shared buffer
+     * with it, so it can be saved if the conduit is being unloaded.
+     *
+     * @param conduit The conduit to remove.
+     */
+    void removeConduit (TileEntityLowVoltageConduit conduit) {
+
+        this.settle();
+        conduit.setPower(this.nodeStored[conduit.getNode()]);
+        this.removeNode(conduit.getNode());
+        conduit.setNetwork(null, -1);
+        this.markEndpointsDirty();
+    }
+
+    /**
+     * Moves every conduit of another network into this one, along with its stored power. This
+     * costs time proportional to the size of the other network, so the smaller network should
+     * always be the one absorbed.
+     *
+     * @param other The network to absorb.
+     */
+    void absorb (ConduitNetwork other) {
+
+        other.settle();
+
+        for (int i = 0; i < other.size; i++)
+            this.addNode(other.nodes[i], other.nodeCapacity[i], other.nodeStored[i]);
+
+        Arrays.fill(other.nodes, 0, other.size, null);
+        other.size = 0;
+        other.capacity = 0;
+        other.stored = 0;
+        this.settled = false;
+        this.markEndpointsDirty();
+    }
+
+    /**
+     * Moves a group of conduits that are no longer connected to the rest of this network into
+     * a new network. Each conduit takes its share of the stored power with it.
+     *
+     * @param group The conduits to split off.
+     * @return The new network.
+     */
+    ConduitNetwork split (Collection<TileEntityLowVoltageConduit> group) {
+
+        final ConduitNetwork network = new ConduitNetwork();
+        this.settle();
+
+        for (final TileEntityLowVoltageConduit conduit : group) {
+
+            final int node = conduit.getNode();
+            network.addNode(conduit, this.nodeCapacity[node], this.nodeStored[node]);
+            this.removeNode(node);
+        }
+
+        this.markEndpointsDirty();
+        return network;
+    }
+
+    /**
+     * Gets the part of the shared buffer that belongs to a conduit, proportional to the
+     * capacity that conduit adds to the network.
+     *
+     * @param conduit The conduit to get the share of.
+     * @return The amount of power the conduit would hold if it left the network.
+     */
+    public long getShare (TileEntityLowVoltageConduit conduit) {
+
+        this.settle();
+        return this.nodeStored[conduit.getNode()];
+    }
+
+    /**
+     * Marks the endpoints of the network as out of date. They will be searched for again
+     * before the next tick, and the network is woken up if it was idle.
+     */
+    public void markEndpointsDirty () {
+
+        this.endpointsDirty = true;
+        this.idleUntil = 0;
+    }
+
+    /**
+     * Gets the number of conduits in the network.
+     *
+     * @return The amount of conduits that make up the network.
+     */
+    public int size () {
+
+        return this.size;
+    }
+
+    /**
+     * Gets the network ready to tick. This looks up any changed endpoints in the world, so it
+     * must be called on the server thread.
+     *
+     * @param time The current world time.
+     * @return Whether or not the network has anything to do this tick.
+     */
+    boolean prepare (long time) {
+
+        if (time < this.idleUntil)
+            return false;
+
+        if (this.endpointsDirty)
+            this.findEndpoints();
+
+        return true;
+    }
+
+    /**
+     * Works out how much power should move between the producers and consumers touching the
+     * network, without moving any. This only reads from the endpoints and the network, so
+     * separate networks can be solved at the same time.
+     */
+    void solve () {
+
+        this.gatherValid = this.solver.gather();
+        this.solver.solve(this.stored, this.capacity);
+    }
+
+    /**
+     * Moves the power worked out by {@link #solve()} from the producers touching the network
+     * to the consumers touching it, going through the shared buffer. A network that could not
+     * move any power checks back every {@link #IDLE_TICKS} ticks, as endpoints can change
+     * their stored power without the network knowing.
+     *
+     * @param time The current world time.
+     */
+    void commit (long time) {
+
+        if (!this.gatherValid)
+            this.endpointsDirty = true;
+
+        this.stored += this.solver.commit(this.stored);
+
+        if (this.solver.hasMoved())
+            this.settled = false;
+
+        else if (!this.endpointsDirty)
+            this.idleUntil = time + IDLE_TICKS;
+    }
+
+    /**
+     * Collects the tiles around every conduit that can give or accept power, using the
+     * neighbor cache of each conduit. Tiles that can do both, like batteries, are only used as
+     * producers so that the network does not move power back into where it came from. A tile
+     * touching the network on several faces is only added once, and each consumer loses power
+     * based on its shortest path to a producer.
+     */
+    private void findEndpoints () {
+
+        //the consumer index of each tile found, or -1 for producers and -2 for anything else
+        final Map<TileEntity, Integer> found = new IdentityHashMap<TileEntity, Integer>();
+        //pairs of consumer index and a node that consumer touches
+        final IntArrayList touching = new IntArrayList();
+        final int[] queue = new int[this.size];
+        int tail = 0;
+
+        if (this.nodeDistance.length < this.size)
+            this.nodeDistance = new int[this.nodes.length];
+
+        Arrays.fill(this.nodeDistance, 0, this.size, Integer.MAX_VALUE);
+        this.solver.clear();
+
+        for (int i = 0; i < this.size; i++) {
+
+            final NeighborCache neighbors = this.nodes[i].getNeighbors();
+
+            for (final EnumFacing side : EnumFacing.VALUES) {
+
+                final TileEntity tile = neighbors.getTile(side);
+
+                if (tile == null || tile instanceof TileEntityLowVoltageConduit)
+                    continue;
+
+                Integer consumerIndex = found.get(tile);
+
+                if (consumerIndex == null) {
+
+                    final IEnergyProducer producer = neighbors.getProducer(side);
+                    final IEnergyConsumer consumer = neighbors.getConsumer(side);
+
+                    if (producer != null) {
+
+                        this.solver.addProducer(tile, producer);
+                        consumerIndex = -1;
+                    }
+
+                    else if (consumer != null) {
+
+                        consumerIndex = this.solver.getConsumerCount();
+                        this.solver.addConsumer(tile, consumer);
+                    }
+
+                    else
+                        consumerIndex = -2;
+
+                    found.put(tile, consumerIndex);
+                }
+
+                if (consumerIndex == -1 && this.nodeDistance[i] != 1) {
+
+                    this.nodeDistance[i] = 1;
+                    queue[tail++] = i;
+                }
+
+                else if (consumerIndex >= 0) {
+
+                    touching.add(consumerIndex);
+                    touching.add(i);
+                }
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+
+            final int node = queue[head];
+            final NeighborCache neighbors = this.nodes[node].getNeighbors();
+
+            for (final EnumFacing side : EnumFacing.VALUES) {
+
+                final TileEntity tile = neighbors.getTile(side);
+
+                if (!(tile instanceof TileEntityLowVoltageConduit) || ((TileEntityLowVoltageConduit) tile).getNetwork() != this)
+                    continue;
+
+                final int next = ((TileEntityLowVoltageConduit) tile).getNode();
+
+                if (this.nodeDistance[next] == Integer.MAX_VALUE) {
+
+                    this.nodeDistance[next] = this.nodeDistance[node] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        final int[] lengths = new int[this.solver.getConsumerCount()];
+        Arrays.fill(lengths, this.size);
+
+        for (int i = 0; i < touching.size(); i += 2)
+            lengths[touching.getInt(i)] = Math.min(lengths[touching.getInt(i)], this.nodeDistance[touching.getInt(i + 1)]);
+
+        for (int i = 0; i < lengths.length; i++)
+            this.solver.setLoss(i, (int) Math.min(1000, (long) lengths[i] * VoltaicsConfig.conduitLoss));
+
+        this.endpointsDirty = false;
+    }
+
+    /**
+     * Splits the shared buffer between the nodes, if it has changed since the last time. Every
+     * Joule is handed to some node, so no power is lost to rounding when conduits leave.
+     */
+    private void settle () {
+
+        if (!this.settled) {
+
+            JouleUtils.allocateProportionally(this.stored, this.nodeCapacity, this.size, this.nodeStored);
+            this.settled = true;
+        }
+    }
+
+    /**
+     * Appends a node to the end of the node arrays.
+     *
+     * @param conduit The conduit of the node.
+     * @param nodeCapacity The capacity the node adds.
+     * @param nodeStored The power the node brings into the shared buffer.
+     */
+    private void addNode (TileEntityLowVoltageConduit conduit, long nodeCapacity, long nodeStored) {
+
+        if (this.size == this.nodes.length) {
+
+            final int length = this.size * 2;
+            this.nodes = Arrays.copyOf(this.nodes, length);
+            this.nodeCapacity = Arrays.copyOf(this.nodeCapacity, length);
+            this.nodeStored = Arrays.copyOf(this.nodeStored, length);
+        }
+
+        this.nodes[this.size] = conduit;
+        this.nodeCapacity[this.size] = nodeCapacity;
+        this.nodeStored[this.size] = nodeStored;
+        this.capacity += nodeCapacity;
+        this.stored += nodeStored;
+        conduit.setNetwork(this, this.size++);
+    }
+
+    /**
+     * Removes a node along with its share of the buffer, by moving the last node into its
+     * place. The network must be settled.
+     *
+     * @param node The node to remove.
+     */
+    private void removeNode (int node) {
+
+        final int last = --this.size;
+        this.capacity -= this.nodeCapacity[node];
+        this.stored -= this.nodeStored[node];
+
+        if (node != last) {
+
+            this.nodes[node] = this.nodes[last];
+            this.nodeCapacity[node] = this.nodeCapacity[last];
+            this.nodeStored[node] = this.nodeStored[last];
+            this.nodes[node].setNetwork(this, node);
+        }
+
+        this.nodes[last] = null;
+    }
+
+    @Override
+    public long getStoredPower () {
+
+        return this.stored;
+    }
+
+    @Override
+    public long getCapacity () {
+
+        return this.capacity;
+    }
+
+    @Override
+    public long givePower (long Joule, boolean simulated) {
+
+        final long acceptedJoule = Math.min(this.capacity - this.stored, Joule);
+
+        if (!simulated && acceptedJoule != 0) {
+
+            this.stored += acceptedJoule;
+            this.settled = false;
+            this.idleUntil = 0;
+        }
+
+        return acceptedJoule;
+    }
+
+    @Override
+    public long takePower (long Joule, boolean simulated) {
+
+        final long removedPower = Math.min(this.stored, Joule);
+
+        if (!simulated && removedPower != 0) {
+
+            this.stored -= removedPower;
+            this.settled = false;
+        }
+
+        return removedPower;
+    }
+}
\ No newline at end of file
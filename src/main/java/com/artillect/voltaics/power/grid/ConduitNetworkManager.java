@@ -0,0 +1,384 @@
+package com.artillect.voltaics.power.grid;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.artillect.voltaics.VoltaicsConfig;
+import com.artillect.voltaics.lib.EnergyTileRegistry;
+import com.artillect.voltaics.lib.PerWorld;
+import com.artillect.voltaics.tileentity.TileEntityLowVoltageConduit;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+
+/**
+ * Keeps track of every loaded low voltage conduit in a world and groups them into
+ * {@link ConduitNetwork}s. Conduits register themselves when they are loaded and unregister
+ * when they are removed or unloaded.
+ *
+ * Connectivity is kept up to date incrementally. A new conduit joins the largest network it
+ * touches and absorbs any smaller ones, so merging costs time proportional to the smaller
+ * networks. When a conduit is removed, searches are run outwards from each of its neighbors
+ * in lock step. The searches stop as soon as they all meet, or split off the part of the
+ * network that one of them has fully explored, so a break only costs time proportional to
+ * the smaller side of the break rather than the whole network.
+ *
+ * Networks share no state with each other, so when {@link VoltaicsConfig#parallelNetworks} is
+ * enabled the read only part of their ticks is run on a shared thread pool. Looking up
+ * endpoints and moving power both touch the world, so they always happen on the server
+ * thread, in the same order as the networks were created.
+ */
+public class ConduitNetworkManager {
+
+    /**
+     * The managers for every loaded server world.
+     */
+    private static final PerWorld<ConduitNetworkManager> MANAGERS = new PerWorld<ConduitNetworkManager>(ConduitNetworkManager::new);
+
+    /**
+     * The thread pool used to solve networks in parallel. Created the first time it is needed.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * The world this manager belongs to.
+     */
+    private final World world;
+
+    /**
+     * Every loaded conduit in the world, keyed by its packed position.
+     */
+    private final Long2ObjectOpenHashMap<TileEntityLowVoltageConduit> conduits = new Long2ObjectOpenHashMap<TileEntityLowVoltageConduit>();
+
+    /**
+     * Every network in the world.
+     */
+    private final Set<ConduitNetwork> networks = new LinkedHashSet<ConduitNetwork>();
+
+    /**
+     * Conduits that are not part of a network yet.
+     */
+    private final Set<TileEntityLowVoltageConduit> pending = new LinkedHashSet<TileEntityLowVoltageConduit>();
+
+    /**
+     * The networks that have something to do this tick.
+     */
+    private final List<ConduitNetwork> active = new ArrayList<ConduitNetwork>();
+
+    private ConduitNetworkManager(World world) {
+
+        this.world = world;
+    }
+
+    /**
+     * Gets the manager for a world, creating it if needed. Should only be used on the server.
+     *
+     * @param world The world to get the manager for.
+     * @return The conduit network manager for the world.
+     */
+    public static ConduitNetworkManager get (World world) {
+
+        return MANAGERS.get(world);
+    }
+
+    /**
+     * Ticks the manager of a world, if it has one.
+     *
+     * @param world The world being ticked.
+     */
+    public static void tickWorld (World world) {
+
+        final ConduitNetworkManager manager = MANAGERS.getIfPresent(world);
+
+        if (manager != null)
+            manager.tick();
+    }
+
+    /**
+     * Drops the manager of a world that is being unloaded.
+     *
+     * @param world The world being unloaded.
+     */
+    public static void unloadWorld (World world) {
+
+        MANAGERS.remove(world);
+    }
+
+    /**
+     * Registers a conduit that has been placed or loaded. It will join a network on the next
+     * tick.
+     *
+     * @param conduit The conduit to register.
+     */
+    public void addConduit (TileEntityLowVoltageConduit conduit) {
+
+        this.conduits.put(conduit.getPos().toLong(), conduit);
+        this.pending.add(conduit);
+    }
+
+    /**
+     * Unregisters a conduit that has been broken or unloaded. If the conduit was holding its
+     * network together, the network is split.
+     *
+     * @param conduit The conduit to unregister.
+     */
+    public void removeConduit (TileEntityLowVoltageConduit conduit) {
+
+        final long key = conduit.getPos().toLong();
+
+        if (this.conduits.get(key) != conduit)
+            return;
+
+        this.conduits.remove(key);
+        this.pending.remove(conduit);
+
+        final ConduitNetwork network = conduit.getNetwork();
+
+        if (network == null)
+            return;
+
+        network.removeConduit(conduit);
+
+        if (network.size() == 0) {
+
+            this.networks.remove(network);
+            return;
+        }
+
+        final List<TileEntityLowVoltageConduit> roots = new ArrayList<TileEntityLowVoltageConduit>(EnumFacing.VALUES.length);
+
+        for (final EnumFacing side : EnumFacing.VALUES) {
+
+            final TileEntityLowVoltageConduit neighbor = this.getNeighbor(conduit, side);
+
+            if (neighbor != null && neighbor.getNetwork() == network)
+                roots.add(neighbor);
+        }
+
+        if (roots.size() > 1)
+            this.splitAround(network, roots);
+    }
+
+    /**
+     * Gets the number of networks in the world.
+     *
+     * @return The amount of conduit networks.
+     */
+    public int getNetworkCount () {
+
+        return this.networks.size();
+    }
+
+    private void tick () {
+
+        if (!this.pending.isEmpty())
+            this.joinPending();
+
+        final long time = this.world.getTotalWorldTime();
+
+        for (final ConduitNetwork network : this.networks)
+            if (network.prepare(time))
+                this.active.add(network);
+
+        if (VoltaicsConfig.parallelNetworks && this.active.size() >= VoltaicsConfig.parallelThreshold)
+            getPool().invoke(new SolveTask(this.active, 0, this.active.size()));
+
+        else
+            for (final ConduitNetwork network : this.active)
+                network.solve();
+
+        for (final ConduitNetwork network : this.active)
+            network.commit(time);
+
+        this.active.clear();
+    }
+
+    private static ForkJoinPool getPool () {
+
+        if (pool == null)
+            pool = new ForkJoinPool(VoltaicsConfig.parallelThreads > 0 ? VoltaicsConfig.parallelThreads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+        return pool;
+    }
+
+    private TileEntityLowVoltageConduit getNeighbor (TileEntityLowVoltageConduit conduit, EnumFacing side) {
+
+        return this.conduits.get(EnergyTileRegistry.offset(conduit.getPos().toLong(), side));
+    }
+
+    /**
+     * Adds every pending conduit to the largest network it touches, merging in any other
+     * networks it connects. Conduits that touch no network start a new one.
+     */
+    private void joinPending () {
+
+        for (final TileEntityLowVoltageConduit conduit : this.pending) {
+
+            ConduitNetwork largest = null;
+
+            for (final EnumFacing side : EnumFacing.VALUES) {
+
+                final TileEntityLowVoltageConduit neighbor = this.getNeighbor(conduit, side);
+
+                if (neighbor != null && neighbor.getNetwork() != null && (largest == null || neighbor.getNetwork().size() > largest.size()))
+                    largest = neighbor.getNetwork();
+            }
+
+            if (largest == null) {
+
+                largest = new ConduitNetwork();
+                this.networks.add(largest);
+            }
+
+            largest.addConduit(conduit);
+
+            for (final EnumFacing side : EnumFacing.VALUES) {
+
+                final TileEntityLowVoltageConduit neighbor = this.getNeighbor(conduit, side);
+
+                if (neighbor == null || neighbor.getNetwork() == null || neighbor.getNetwork() == largest)
+                    continue;
+
+                final ConduitNetwork other = neighbor.getNetwork();
+                this.networks.remove(other);
+                largest.absorb(other);
+            }
+        }
+
+        this.pending.clear();
+    }
+
+    /**
+     * Checks whether the neighbors of a removed conduit are still connected to each other, by
+     * running one breadth first search from each of them and advancing them in turn. Searches
+     * that reach each other are merged. A search that runs out of conduits without meeting
+     * any other has found a separate piece of the network, which is split off. Once a single
+     * search is left, the rest of the network is known to be connected and nothing more is
+     * visited.
+     *
+     * @param network The network the conduit was removed from.
+     * @param roots The neighbors of the removed conduit that are in the network.
+     */
+    private void splitAround (ConduitNetwork network, List<TileEntityLowVoltageConduit> roots) {
+
+        final int count = roots.size();
+        final int[] parent = new int[count];
+        final boolean[] finished = new boolean[count];
+        final List<ArrayDeque<TileEntityLowVoltageConduit>> frontiers = new ArrayList<ArrayDeque<TileEntityLowVoltageConduit>>(count);
+        final List<List<TileEntityLowVoltageConduit>> visited = new ArrayList<List<TileEntityLowVoltageConduit>>(count);
+        final Long2IntOpenHashMap owners = new Long2IntOpenHashMap();
+        owners.defaultReturnValue(-1);
+
+        for (int i = 0; i < count; i++) {
+
+            final TileEntityLowVoltageConduit root = roots.get(i);
+            final ArrayDeque<TileEntityLowVoltageConduit> frontier = new ArrayDeque<TileEntityLowVoltageConduit>();
+            final List<TileEntityLowVoltageConduit> seen = new ArrayList<TileEntityLowVoltageConduit>();
+            frontier.add(root);
+            seen.add(root);
+            frontiers.add(frontier);
+            visited.add(seen);
+            owners.put(root.getPos().toLong(), i);
+            parent[i] = i;
+        }
+
+        int searches = count;
+
+        while (searches > 1) {
+
+            for (int i = 0; i < count && searches > 1; i++) {
+
+                if (finished[i] || parent[i] != i)
+                    continue;
+
+                final ArrayDeque<TileEntityLowVoltageConduit> frontier = frontiers.get(i);
+
+                if (frontier.isEmpty()) {
+
+                    this.networks.add(network.split(visited.get(i)));
+                    finished[i] = true;
+                    searches--;
+                    continue;
+                }
+
+                final TileEntityLowVoltageConduit current = frontier.poll();
+
+                for (final EnumFacing side : EnumFacing.VALUES) {
+
+                    final TileEntityLowVoltageConduit neighbor = this.getNeighbor(current, side);
+
+                    if (neighbor == null || neighbor.getNetwork() != network)
+                        continue;
+
+                    final long key = neighbor.getPos().toLong();
+                    final int owner = owners.get(key);
+
+                    if (owner == -1) {
+
+                        owners.put(key, i);
+                        visited.get(i).add(neighbor);
+                        frontier.add(neighbor);
+                        continue;
+                    }
+
+                    final int other = find(parent, owner);
+
+                    if (other != i) {
+
+                        parent[other] = i;
+                        frontier.addAll(frontiers.get(other));
+                        frontiers.get(other).clear();
+                        visited.get(i).addAll(visited.get(other));
+                        visited.get(other).clear();
+                        searches--;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int find (int[] parent, int index) {
+
+        while (parent[index] != index)
+            index = parent[index];
+
+        return index;
+    }
+
+    /**
+     * Solves a range of networks, splitting it in half until each task only has one network.
+     */
+    private static class SolveTask extends RecursiveAction {
+
+        private final List<ConduitNetwork> networks;
+        private final int start;
+        private final int end;
+
+        private SolveTask(List<ConduitNetwork> networks, int start, int end) {
+
+            this.networks = networks;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute () {
+
+            if (this.end - this.start == 1) {
+
+                this.networks.get(this.start).solve();
+                return;
+            }
+
+            final int middle = (this.start + this.end) >>> 1;
+            invokeAll(new SolveTask(this.networks, this.start, middle), new SolveTask(this.networks, middle, this.end));
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.artillect.voltaics.power.grid;
+
+import java.util.Arrays;
+
+import com.artillect.voltaics.lib.JouleUtils;
+import com.artillect.voltaics.power.IEnergyConsumer;
+import com.artillect.voltaics.power.IEnergyProducer;
+
+import net.minecraft.tileentity.TileEntity;
+
+/**
+ * Works out how power moves between the producers and consumers touching a conduit network.
+ * Every tick, each endpoint is simulated once to find out how much it can give or take while
+ * respecting its own input and output rates. The power that can be moved is then split
+ * between the endpoints in proportion to those amounts, and each endpoint is called once more
+ * to actually move it. The result only depends on the endpoints and not on the order in
+ * which they happen to touch the network.
+ *
+ * Gathering and solving only read from the endpoints, while committing changes them. This
+ * lets the first two steps of separate networks run at the same time.
+ *
+ * Consumers far away from a producer lose some power on the way. Each consumer has a loss
+ * in thousandths of the power it is given, which the network has to pay on top of the power
+ * the consumer actually receives.
+ */
+public class FlowSolver {
+
+    private TileEntity[] producerTiles = new TileEntity[4];
+    private IEnergyProducer[] producers = new IEnergyProducer[4];
+    private long[] offers = new long[4];
+    private long[] takes = new long[4];
+    private long[] taken = new long[4];
+    private int producerCount;
+
+    private TileEntity[] consumerTiles = new TileEntity[4];
+    private IEnergyConsumer[] consumers = new IEnergyConsumer[4];
+    private long[] demands = new long[4];
+    private long[] costs = new long[4];
+    private long[] gives = new long[4];
+    private long[] given = new long[4];
+    private int[] losses = new int[4];
+    private int consumerCount;
+
+    /**
+     * The amounts asked for while simulating, one for each endpoint.
+     */
+    private long[] requests = new long[4];
+
+    /**
+     * The total amount of power the producers offered in the last gather.
+     */
+    private long offered;
+
+    /**
+     * The total amount of power the network needs to satisfy every consumer in the last
+     * gather, including the power lost on the way.
+     */
+    private long demanded;
+
+    /**
+     * The total amount of power the last solve planned to take from the producers.
+     */
+    private long planned;
+
+    /**
+     * Whether or not any power was moved by the last commit.
+     */
+    private boolean moved;
+
+    /**
+     * Forgets every endpoint.
+     */
+    void clear () {
+
+        Arrays.fill(this.producerTiles, 0, this.producerCount, null);
+        Arrays.fill(this.producers, 0, this.producerCount, null);
+        Arrays.fill(this.consumerTiles, 0, this.consumerCount, null);
+        Arrays.fill(this.consumers, 0, this.consumerCount, null);
+        this.producerCount = 0;
+        this.consumerCount = 0;
+    }
+
+    /**
+     * Adds a producer that the network can pull power from.
+     *
+     * @param tile The tile the producer belongs to.
+     * @param producer The producer capability of the tile, on the side facing the network.
+     */
+    void addProducer (TileEntity tile, IEnergyProducer producer) {
+
+        if (this.producerCount == this.producers.length) {
+
+            final int size = this.producerCount * 2;
+            this.producerTiles = Arrays.copyOf(this.producerTiles, size);
+            this.producers = Arrays.copyOf(this.producers, size);
+            this.offers = Arrays.copyOf(this.offers, size);
+            this.takes = Arrays.copyOf(this.takes, size);
+            this.taken = Arrays.copyOf(this.taken, size);
+
+            if (this.requests.length < size)
+                this.requests = Arrays.copyOf(this.requests, size);
+        }
+
+        this.producerTiles[this.producerCount] = tile;
+        this.producers[this.producerCount++] = producer;
+    }
+
+    /**
+     * Adds a consumer that the network can push power into.
+     *
+     * @param tile The tile the consumer belongs to.
+     * @param consumer The consumer capability of the tile, on the side facing the network.
+     */
+    void addConsumer (TileEntity tile, IEnergyConsumer consumer) {
+
+        if (this.consumerCount == this.consumers.length) {
+
+            final int size = this.consumerCount * 2;
+            this.consumerTiles = Arrays.copyOf(this.consumerTiles, size);
+            this.consumers = Arrays.copyOf(this.consumers, size);
+            this.demands = Arrays.copyOf(this.demands, size);
+            this.costs = Arrays.copyOf(this.costs, size);
+            this.gives = Arrays.copyOf(this.gives, size);
+            this.given = Arrays.copyOf(this.given, size);
+            this.losses = Arrays.copyOf(this.losses, size);
+
+            if (this.requests.length < size)
+                this.requests = Arrays.copyOf(this.requests, size);
+        }
+
+        this.consumerTiles[this.consumerCount] = tile;
+        this.losses[this.consumerCount] = 0;
+        this.consumers[this.consumerCount++] = consumer;
+    }
+
+    /**
+     * Gets the number of consumers that have been added.
+     *
+     * @return The amount of consumers.
+     */
+    int getConsumerCount () {
+
+        return this.consumerCount;
+    }
+
+    /**
+     * Sets how much of the power given to a consumer is lost on the way.
+     *
+     * @param consumer The index of the consumer, in the order they were added.
+     * @param loss The loss in thousandths of the power delivered.
+     */
+    void setLoss (int consumer, int loss) {
+
+        this.losses[consumer] = loss;
+    }
+
+    /**
+     * Simulates every endpoint once to find out how much it can give or take this tick.
+     *
+     * @return False if an endpoint has been removed, in which case the endpoints need to be
+     *         collected again. Removed endpoints are skipped for this tick.
+     */
+    boolean gather () {
+
+        boolean valid = true;
+        this.offered = 0;
+        this.demanded = 0;
+
+        for (int i = 0; i < this.producerCount; i++) {
+
+            final boolean removed = this.producerTiles[i].isInvalid();
+            this.requests[i] = removed ? 0 : Long.MAX_VALUE;
+            valid &= !removed;
+        }
+
+        this.takeAll(this.requests, this.offers, true);
+
+        for (int i = 0; i < this.producerCount; i++) {
+
+            this.offers[i] = Math.max(0, this.offers[i]);
+            this.offered = JouleUtils.saturatedAdd(this.offered, this.offers[i]);
+        }
+
+        for (int i = 0; i < this.consumerCount; i++) {
+
+            final boolean removed = this.consumerTiles[i].isInvalid();
+            this.requests[i] = removed ? 0 : Long.MAX_VALUE;
+            valid &= !removed;
+        }
+
+        this.giveAll(this.requests, this.demands, true);
+
+        for (int i = 0; i < this.consumerCount; i++) {
+
+            this.demands[i] = Math.max(0, this.demands[i]);
+            this.costs[i] = JouleUtils.saturatedAdd(this.demands[i], lossOf(this.demands[i], this.losses[i]));
+            this.demanded = JouleUtils.saturatedAdd(this.demanded, this.costs[i]);
+        }
+
+        return valid;
+    }
+
+    /**
+     * Plans how much power to take from each producer and give to each consumer, based on the
+     * amounts found by the last {@link #gather()}. The buffer is drained into the consumers
+     * first, and the producers are pulled from to cover the rest of the demand and to refill
+     * the buffer. When there is not enough power, it is split in proportion to what each
+     * consumer would cost, losses included.
+     *
+     * @param stored The amount of power in the buffer of the network.
+     * @param capacity The capacity of the buffer of the network.
+     */
+    void solve (long stored, long capacity) {
+
+        final long pull = Math.min(this.offered, JouleUtils.saturatedAdd(this.demanded, capacity - stored));
+        this.planned = JouleUtils.allocateProportionally(pull, this.offers, this.producerCount, this.takes);
+        final long deliver = Math.min(this.demanded, JouleUtils.saturatedAdd(stored, this.planned));
+        JouleUtils.allocateProportionally(deliver, this.costs, this.consumerCount, this.gives);
+
+        for (int i = 0; i < this.consumerCount; i++)
+            this.gives[i] = this.gives[i] == this.costs[i] ? this.demands[i] : deliverable(this.gives[i], this.losses[i]);
+    }
+
+    /**
+     * Moves the power planned by the last {@link #solve(long, long)}. If a producer hands over
+     * less than it offered, the consumers are given less in turn so the buffer never goes
+     * below zero. Power lost on the way is taken from the buffer along with the power that
+     * is delivered.
+     *
+     * @param stored The amount of power in the buffer of the network.
+     * @return The change in the amount of power stored in the buffer.
+     */
+    long commit (long stored) {
+
+        this.takeAll(this.takes, this.taken, false);
+        long totalTaken = 0;
+
+        for (int i = 0; i < this.producerCount; i++)
+            totalTaken += this.taken[i];
+
+        long spent = 0;
+
+        if (totalTaken >= this.planned) {
+
+            this.giveAll(this.gives, this.given, false);
+
+            for (int i = 0; i < this.consumerCount; i++)
+                spent += this.given[i] + lossOf(this.given[i], this.losses[i]);
+        }
+
+        else {
+
+            for (int i = 0; i < this.consumerCount; i++) {
+
+                if (this.gives[i] <= 0)
+                    continue;
+
+                final long available = deliverable(stored + totalTaken - spent, this.losses[i]);
+                final long accepted = this.consumers[i].givePower(Math.min(this.gives[i], available), false);
+                spent += accepted + lossOf(accepted, this.losses[i]);
+            }
+        }
+
+        this.moved = totalTaken > 0 || spent > 0;
+        return totalTaken - spent;
+    }
+
+    /**
+     * Checks if the last commit moved any power.
+     *
+     * @return Whether or not power was moved.
+     */
+    boolean hasMoved () {
+
+        return this.moved;
+    }
+
+    /**
+     * Asks every producer for power.
+     *
+     * @param amounts The amount to ask each producer for.
+     * @param results The array to write the amount each producer gives into.
+     * @param simulated Whether or not this is being ran as part of a simulation.
+     */
+    private void takeAll (long[] amounts, long[] results, boolean simulated) {
+
+        for (int i = 0; i < this.producerCount; i++)
+            results[i] = amounts[i] > 0 ? this.producers[i].takePower(amounts[i], simulated) : 0;
+    }
+
+    /**
+     * Offers power to every consumer.
+     *
+     * @param amounts The amount to offer each consumer.
+     * @param results The array to write the amount each consumer accepts into.
+     * @param simulated Whether or not this is being ran as part of a simulation.
+     */
+    private void giveAll (long[] amounts, long[] results, boolean simulated) {
+
+        for (int i = 0; i < this.consumerCount; i++)
+            results[i] = amounts[i] > 0 ? this.consumers[i].givePower(amounts[i], simulated) : 0;
+    }
+
+    /**
+     * Gets the power lost when delivering power to a consumer. This is rounded up, so even
+     * small amounts are not delivered for free.
+     *
+     * @param amount The amount of power delivered.
+     * @param loss The loss of the consumer, in thousandths.
+     * @return The amount of power lost on the way.
+     */
+    private static long lossOf (long amount, int loss) {
+
+        //split up so huge amounts from unlimited endpoints do not overflow
+        return loss == 0 ? 0 : amount / 1000 * loss + (amount % 1000 * loss + 999) / 1000;
+    }
+
+    /**
+     * Gets the most power that can be delivered to a consumer without spending more than a
+     * budget, losses included.
+     *
+     * @param budget The amount of power that can be spent.
+     * @param loss The loss of the consumer, in thousandths.
+     * @return The amount of power that can be delivered.
+     */
+    private static long deliverable (long budget, int loss) {
+
+        final int divisor = 1000 + loss;
+        return loss == 0 ? budget : budget / divisor * 1000 + budget % divisor * 1000 / divisor;
+    }
+}
@@ -0,0 +1,723 @@
+package com.artillect.voltaics.power.heat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.artillect.voltaics.VoltaicsConfig;
+import com.artillect.voltaics.lib.BlockChangeQueue;
+import com.artillect.voltaics.lib.EnergyTileRegistry;
+import com.artillect.voltaics.lib.PerWorld;
+import com.artillect.voltaics.power.IHeat;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Conducts heat between the loaded Voltaics heat holders in a world, and between them and
+ * their surroundings. Tiles register their {@link IHeat} capability when they are loaded and
+ * unregister when they are removed or unloaded, and the links between touching holders are
+ * kept up to date as that happens, so a step never looks anything up in the world.
+ *
+ * Holders are grouped into regions by chunk section, and every
+ * {@link VoltaicsConfig#heatStepInterval} ticks each active region is stepped as a batch. All
+ * temperatures are read first, then the heat flowing through every link and into the
+ * surroundings is worked out, and finally the net change of every holder is applied with one
+ * call. Heat moved through a link is taken from one side and given to the
+ * other, so conduction never creates or destroys heat.
+ *
+ * Most holders sit at the ambient temperature most of the time, so only regions with a holder
+ * further than {@link VoltaicsConfig#heatActiveThreshold} from it are stepped. A region is
+ * retired once all of its holders have settled, and woken again when a holder is added to it,
+ * when its tile reports a change in heat, or when heat conducted from an active region pushes
+ * one of its holders past the threshold. The cost of a step therefore follows the number of
+ * hot holders rather than the number of loaded ones.
+ *
+ * Heat moves slowly, so a step covers several ticks at once. The step is implicit: the
+ * temperatures at the end of the step are solved for with the conjugate gradient method until
+ * they settle, and the heat flows are worked out from those. Unlike an explicit step, this can
+ * not overshoot or oscillate however long the step is or however well the holders conduct.
+ *
+ * Holders that reach their melting point during a step are queued on the
+ * {@link BlockChangeQueue} of the world and turn into magma at the end of the tick.
+ */
+public class ThermalManager {
+
+    /**
+     * How close, in degrees, the solved temperatures of a step have to be to the exact answer.
+     */
+    private static final double TOLERANCE = 1E-3;
+
+    /**
+     * The most iterations used to solve the temperatures of a step. The conjugate gradient
+     * method is exact after as many iterations as there are nodes, and gets close much sooner,
+     * so this is only reached by very large, long chains of holders. Heat is conserved no matter
+     * how many iterations are done.
+     */
+    private static final int MAX_ITERATIONS = 256;
+
+    /**
+     * The managers for every loaded server world.
+     */
+    private static final PerWorld<ThermalManager> MANAGERS = new PerWorld<ThermalManager>(world -> new ThermalManager());
+
+    /**
+     * The node of every heat holder, keyed by its packed position.
+     */
+    private final Long2IntOpenHashMap nodes = new Long2IntOpenHashMap();
+
+    /**
+     * Every region with at least one node, keyed by the packed position of the chunk section.
+     */
+    private final Long2ObjectOpenHashMap<Region> regions = new Long2ObjectOpenHashMap<Region>();
+
+    /**
+     * The regions that are stepped on every step. Regions are only taken out of this list at the
+     * end of a step, so it can hold regions that have been retired or emptied in the meantime.
+     */
+    private final List<Region> active = new ArrayList<Region>();
+
+    /**
+     * The nodes read during the current step, which are the nodes in active regions and the
+     * nodes linked to them.
+     */
+    private final IntArrayList touched = new IntArrayList();
+
+    /**
+     * Nodes that have been removed and can be used again.
+     */
+    private final IntArrayList free = new IntArrayList();
+
+    private TileEntity[] tiles = new TileEntity[16];
+    private IHeat[] heats = new IHeat[16];
+    private Region[] regionOf = new Region[16];
+
+    /**
+     * The step each node was last read in, so nodes shared by several regions are only read
+     * once.
+     */
+    private int[] stamps = new int[16];
+
+    /**
+     * The node touching each face of every node, indexed by node times six plus
+     * {@link EnumFacing#getIndex()}, or -1 if there is none.
+     */
+    private int[] links = new int[16 * 6];
+
+    /**
+     * The temperature, thermal mass and conductivity of every node at the start of the step.
+     */
+    private long[] temperatures = new long[16];
+    private long[] masses = new long[16];
+    private long[] conductivities = new long[16];
+    private long[] meltingPoints = new long[16];
+
+    /**
+     * The temperature of every node at the end of the step.
+     */
+    private double[] solved = new double[16];
+
+    /**
+     * The scratch vectors of the conjugate gradient solve: the diagonal of the system, the
+     * residual, the preconditioned residual, the search direction and the system times the
+     * search direction.
+     */
+    private double[] diagonals = new double[16];
+    private double[] residuals = new double[16];
+    private double[] preconditioned = new double[16];
+    private double[] directions = new double[16];
+    private double[] products = new double[16];
+
+    /**
+     * The heat gained or lost by every node during the step.
+     */
+    private long[] deltas = new long[16];
+
+    /**
+     * The number of node slots in use, including removed ones.
+     */
+    private int size;
+
+    /**
+     * The number of the current step.
+     */
+    private int stamp;
+
+    /**
+     * The number of ticks since the last step.
+     */
+    private int ticks;
+
+    private ThermalManager() {
+
+        this.nodes.defaultReturnValue(-1);
+    }
+
+    /**
+     * Gets the manager for a world, creating it if needed. Should only be used on the server.
+     *
+     * @param world The world to get the manager for.
+     * @return The thermal manager for the world.
+     */
+    public static ThermalManager get (World world) {
+
+        return MANAGERS.get(world);
+    }
+
+    /**
+     * Ticks the manager of a world, if it has one.
+     *
+     * @param world The world being ticked.
+     */
+    public static void tickWorld (World world) {
+
+        final ThermalManager manager = MANAGERS.getIfPresent(world);
+
+        if (manager != null)
+            manager.tick();
+    }
+
+    /**
+     * Drops the manager of a world that is being unloaded.
+     *
+     * @param world The world being unloaded.
+     */
+    public static void unloadWorld (World world) {
+
+        MANAGERS.remove(world);
+    }
+
+    /**
+     * Registers a heat holder that has been placed or loaded, linking it to the holders around
+     * it.
+     *
+     * @param tile The tile the heat holder belongs to.
+     * @param heat The heat capability of the tile.
+     */
+    public void add (TileEntity tile, IHeat heat) {
+
+        final BlockPos blockPos = tile.getPos();
+        final long pos = blockPos.toLong();
+        final int existing = this.nodes.get(pos);
+
+        if (existing >= 0)
+            this.remove(this.tiles[existing]);
+
+        final int node = this.free.isEmpty() ? this.grow() : this.free.removeInt(this.free.size() - 1);
+        this.tiles[node] = tile;
+        this.heats[node] = heat;
+        this.nodes.put(pos, node);
+
+        for (final EnumFacing side : EnumFacing.VALUES) {
+
+            final int neighbor = this.nodes.get(EnergyTileRegistry.offset(pos, side));
+            this.links[node * 6 + side.getIndex()] = neighbor;
+
+            if (neighbor >= 0)
+                this.links[neighbor * 6 + side.getOpposite().getIndex()] = node;
+        }
+
+        final long key = regionKey(blockPos);
+        Region region = this.regions.get(key);
+
+        if (region == null) {
+
+            region = new Region();
+            this.regions.put(key, region);
+        }
+
+        region.nodes.add(node);
+        this.regionOf[node] = region;
+        this.wake(region);
+    }
+
+    /**
+     * Makes sure the region of a heat holder is stepped, after its heat was changed by
+     * something other than this manager.
+     *
+     * @param tile The tile whose heat changed.
+     */
+    public void wake (TileEntity tile) {
+
+        final int node = this.nodes.get(tile.getPos().toLong());
+
+        if (node >= 0 && this.tiles[node] == tile)
+            this.wake(this.regionOf[node]);
+    }
+
+    /**
+     * Unregisters a heat holder that has been broken or unloaded. Nothing happens if the tile
+     * was never registered, or if another tile has already taken its place.
+     *
+     * @param tile The tile to unregister.
+     */
+    public void remove (TileEntity tile) {
+
+        final BlockPos blockPos = tile.getPos();
+        final long pos = blockPos.toLong();
+        final int node = this.nodes.get(pos);
+
+        if (node < 0 || this.tiles[node] != tile)
+            return;
+
+        this.nodes.remove(pos);
+
+        for (final EnumFacing side : EnumFacing.VALUES) {
+
+            final int neighbor = this.links[node * 6 + side.getIndex()];
+
+            if (neighbor >= 0)
+                this.links[neighbor * 6 + side.getOpposite().getIndex()] = -1;
+
+            this.links[node * 6 + side.getIndex()] = -1;
+        }
+
+        final Region region = this.regionOf[node];
+        region.nodes.rem(node);
+
+        if (region.nodes.isEmpty()) {
+
+            this.regions.remove(regionKey(blockPos));
+            region.active = false;
+        }
+
+        this.tiles[node] = null;
+        this.heats[node] = null;
+        this.regionOf[node] = null;
+        this.free.add(node);
+    }
+
+    /**
+     * Steps every active region once every few ticks, then retires the ones that have settled.
+     */
+    private void tick () {
+
+        if (this.active.isEmpty() || ++this.ticks < VoltaicsConfig.heatStepInterval)
+            return;
+
+        final int interval = this.ticks;
+        final int stepped = this.active.size();
+        this.ticks = 0;
+        this.stamp++;
+        this.touched.clear();
+
+        for (int i = 0; i < stepped; i++)
+            if (this.active.get(i).active)
+                this.read(this.active.get(i));
+
+        this.solve(interval);
+        this.conduct(interval);
+        this.apply();
+        this.retire(stepped);
+    }
+
+    /**
+     * Reads the temperature of every node in a region and of the nodes linked to them.
+     *
+     * @param region The region to read.
+     */
+    private void read (Region region) {
+
+        for (int i = 0; i < region.nodes.size(); i++) {
+
+            final int node = region.nodes.getInt(i);
+            this.touch(node);
+
+            for (int side = 0; side < 6; side++)
+                if (this.links[node * 6 + side] >= 0)
+                    this.touch(this.links[node * 6 + side]);
+        }
+    }
+
+    /**
+     * Reads the temperature, thermal mass and conductivity of a node, if it has not been read
+     * during this step yet.
+     *
+     * @param node The node to read.
+     */
+    private void touch (int node) {
+
+        if (this.stamps[node] == this.stamp)
+            return;
+
+        final IHeat heat = this.heats[node];
+        this.stamps[node] = this.stamp;
+        this.temperatures[node] = heat.getTemperature();
+        this.masses[node] = Math.max(1, heat.getThermalMass());
+        this.conductivities[node] = Math.max(0, heat.getConductivity());
+        this.meltingPoints[node] = heat.getMeltingPoint();
+        this.deltas[node] = 0;
+        this.touched.add(node);
+    }
+
+    /**
+     * Solves for the temperature of every node read during the step at the end of the step.
+     * Links to nodes that were not read are left out, as those nodes are all close to the
+     * ambient temperature.
+     *
+     * Each node's heat at the end of the step is its heat at the start plus what flowed in
+     * through its links and from its surroundings at the end temperatures. The system this
+     * forms is symmetric and positive definite, so it is solved with the conjugate gradient
+     * method, preconditioned by its diagonal, until every temperature is within
+     * {@link #TOLERANCE} of the answer. Unlike plain sweeps, this converges just as quickly for
+     * links that conduct very well.
+     *
+     * @param interval The number of ticks the step covers.
+     */
+    private void solve (int interval) {
+
+        final double ambient = VoltaicsConfig.ambientTemperature;
+        final double ambientLoss = VoltaicsConfig.ambientHeatLoss / 1000D;
+        double dot = 0;
+
+        for (int i = 0; i < this.touched.size(); i++) {
+
+            final int node = this.touched.getInt(i);
+            final double surroundings = (double) interval * this.conductivities[node] * ambientLoss;
+            double diagonal = this.masses[node] + surroundings;
+
+            for (int side = 0; side < 6; side++) {
+
+                final int neighbor = this.links[node * 6 + side];
+
+                if (neighbor >= 0 && this.stamps[neighbor] == this.stamp)
+                    diagonal += (double) interval * this.linkConductance(node, neighbor);
+            }
+
+            this.diagonals[node] = diagonal;
+            this.solved[node] = this.temperatures[node];
+        }
+
+        //starting from the temperatures at the start of the step, the residual is the heat that
+        //would flow in from the surroundings and the neighbors
+        this.multiply(interval, this.solved);
+
+        for (int i = 0; i < this.touched.size(); i++) {
+
+            final int node = this.touched.getInt(i);
+            final double surroundings = (double) interval * this.conductivities[node] * ambientLoss;
+            this.residuals[node] = this.masses[node] * (double) this.temperatures[node] + surroundings * ambient - this.products[node];
+            this.preconditioned[node] = this.residuals[node] / this.diagonals[node];
+            this.directions[node] = this.preconditioned[node];
+            dot += this.residuals[node] * this.preconditioned[node];
+        }
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS && !this.isConverged(); iteration++) {
+
+            this.multiply(interval, this.directions);
+            double curvature = 0;
+
+            for (int i = 0; i < this.touched.size(); i++)
+                curvature += this.directions[this.touched.getInt(i)] * this.products[this.touched.getInt(i)];
+
+            if (curvature <= 0)
+                break;
+
+            final double step = dot / curvature;
+            double next = 0;
+
+            for (int i = 0; i < this.touched.size(); i++) {
+
+                final int node = this.touched.getInt(i);
+                this.solved[node] += step * this.directions[node];
+                this.residuals[node] -= step * this.products[node];
+                this.preconditioned[node] = this.residuals[node] / this.diagonals[node];
+                next += this.residuals[node] * this.preconditioned[node];
+            }
+
+            final double ratio = next / dot;
+            dot = next;
+
+            for (int i = 0; i < this.touched.size(); i++) {
+
+                final int node = this.touched.getInt(i);
+                this.directions[node] = this.preconditioned[node] + ratio * this.directions[node];
+            }
+        }
+    }
+
+    /**
+     * Multiplies a vector of temperatures by the system solved in a step, giving the heat each
+     * node holds at those temperatures plus what it would lose through its links and to its
+     * surroundings. The result is written into {@link #products}.
+     *
+     * @param interval The number of ticks the step covers.
+     * @param vector The temperature of every node read during the step.
+     */
+    private void multiply (int interval, double[] vector) {
+
+        for (int i = 0; i < this.touched.size(); i++) {
+
+            final int node = this.touched.getInt(i);
+            double product = this.diagonals[node] * vector[node];
+
+            for (int side = 0; side < 6; side++) {
+
+                final int neighbor = this.links[node * 6 + side];
+
+                if (neighbor >= 0 && this.stamps[neighbor] == this.stamp)
+                    product -= (double) interval * this.linkConductance(node, neighbor) * vector[neighbor];
+            }
+
+            this.products[node] = product;
+        }
+    }
+
+    /**
+     * Checks if the solved temperatures are close enough to the answer, going by how far the
+     * residual of each node would move its temperature.
+     *
+     * @return Whether or not the solve can stop.
+     */
+    private boolean isConverged () {
+
+        for (int i = 0; i < this.touched.size(); i++)
+            if (Math.abs(this.preconditioned[this.touched.getInt(i)]) > TOLERANCE)
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Works out the heat flowing through every link between nodes read during the step, and
+     * between each of them and their surroundings, from the solved temperatures. Each link is
+     * only worked out from its forward side.
+     *
+     * @param interval The number of ticks the step covers.
+     */
+    private void conduct (int interval) {
+
+        final double ambient = VoltaicsConfig.ambientTemperature;
+        final long ambientLoss = VoltaicsConfig.ambientHeatLoss;
+
+        for (int i = 0; i < this.touched.size(); i++) {
+
+            final int node = this.touched.getInt(i);
+            final double temperature = this.solved[node];
+
+            for (final EnumFacing side : EnumFacing.VALUES) {
+
+                final int neighbor = this.links[node * 6 + side.getIndex()];
+
+                if (neighbor < 0 || this.stamps[neighbor] != this.stamp || !isForward(side))
+                    continue;
+
+                final long flow = Math.round(interval * this.linkConductance(node, neighbor) * (temperature - this.solved[neighbor]));
+                this.deltas[node] -= flow;
+                this.deltas[neighbor] += flow;
+            }
+
+            if (ambientLoss > 0 && this.conductivities[node] > 0)
+                this.deltas[node] -= this.ambientFlow(node, interval, temperature - ambient, ambientLoss);
+        }
+    }
+
+    /**
+     * Applies the heat gained or lost by every node read during the step. Regions that are not
+     * being stepped are woken if one of their nodes is pushed past the threshold, and nodes
+     * that reached their melting point are queued to melt.
+     */
+    private void apply () {
+
+        for (int i = 0; i < this.touched.size(); i++) {
+
+            final int node = this.touched.getInt(i);
+            final long delta = this.deltas[node];
+
+            if (delta > 0)
+                this.heats[node].giveHeat(delta, false);
+
+            else if (delta < 0)
+                this.heats[node].takeHeat(-delta, false);
+
+            final long temperature = delta == 0 ? this.temperatures[node] : this.heats[node].getTemperature();
+
+            if (VoltaicsConfig.machinesMelt && this.meltingPoints[node] > 0 && temperature >= this.meltingPoints[node])
+                this.melt(node);
+
+            if (delta != 0 && !this.regionOf[node].active && isHot(temperature))
+                this.wake(this.regionOf[node]);
+        }
+    }
+
+    /**
+     * Queues the block of a node to turn into magma at the end of the tick. The node stays
+     * registered until its tile is removed by the change.
+     *
+     * @param node The node that melted.
+     */
+    private void melt (int node) {
+
+        final TileEntity tile = this.tiles[node];
+        BlockChangeQueue.get(tile.getWorld()).queue(tile.getPos(), Blocks.MAGMA.getDefaultState());
+    }
+
+    /**
+     * Retires the stepped regions where every node has settled, and drops every inactive
+     * region from the list.
+     *
+     * @param stepped The number of regions at the start of the list that were stepped.
+     */
+    private void retire (int stepped) {
+
+        int kept = 0;
+
+        for (int i = 0; i < this.active.size(); i++) {
+
+            final Region region = this.active.get(i);
+
+            if (region.active && i < stepped && this.isSettled(region))
+                region.active = false;
+
+            if (region.active)
+                this.active.set(kept++, region);
+        }
+
+        this.active.subList(kept, this.active.size()).clear();
+    }
+
+    /**
+     * Checks if every node in a region was close to the ambient temperature at the start of the
+     * step.
+     *
+     * @param region The region to check.
+     * @return Whether or not the region can stop being stepped.
+     */
+    private boolean isSettled (Region region) {
+
+        for (int i = 0; i < region.nodes.size(); i++)
+            if (isHot(this.temperatures[region.nodes.getInt(i)]))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Starts stepping a region, if it is not being stepped already.
+     *
+     * @param region The region to wake.
+     */
+    private void wake (Region region) {
+
+        if (!region.active) {
+
+            region.active = true;
+            this.active.add(region);
+        }
+    }
+
+    /**
+     * Makes room for one more node.
+     *
+     * @return The index of the new node.
+     */
+    private int grow () {
+
+        if (this.size == this.tiles.length) {
+
+            final int capacity = this.size * 2;
+            this.tiles = Arrays.copyOf(this.tiles, capacity);
+            this.heats = Arrays.copyOf(this.heats, capacity);
+            this.regionOf = Arrays.copyOf(this.regionOf, capacity);
+            this.stamps = Arrays.copyOf(this.stamps, capacity);
+            this.links = Arrays.copyOf(this.links, capacity * 6);
+            this.temperatures = Arrays.copyOf(this.temperatures, capacity);
+            this.masses = Arrays.copyOf(this.masses, capacity);
+            this.conductivities = Arrays.copyOf(this.conductivities, capacity);
+            this.meltingPoints = Arrays.copyOf(this.meltingPoints, capacity);
+            this.solved = Arrays.copyOf(this.solved, capacity);
+            this.diagonals = Arrays.copyOf(this.diagonals, capacity);
+            this.residuals = Arrays.copyOf(this.residuals, capacity);
+            this.preconditioned = Arrays.copyOf(this.preconditioned, capacity);
+            this.directions = Arrays.copyOf(this.directions, capacity);
+            this.products = Arrays.copyOf(this.products, capacity);
+            this.deltas = Arrays.copyOf(this.deltas, capacity);
+        }
+
+        return this.size++;
+    }
+
+    /**
+     * Gets the heat moved through a link per tick for every degree of difference. This is
+     * limited by the worse conductor.
+     *
+     * @param first The node on one side of the link.
+     * @param second The node on the other side of the link.
+     * @return The conductance of the link.
+     */
+    private long linkConductance (int first, int second) {
+
+        return Math.min(this.conductivities[first], this.conductivities[second]);
+    }
+
+    /**
+     * Gets the heat a node loses to its surroundings during a step. The loss is rounded away
+     * from zero so a node always ends up at the ambient temperature, but never takes the node
+     * past it.
+     *
+     * @param node The node.
+     * @param interval The number of ticks the step covers.
+     * @param difference The solved temperature of the node minus the ambient temperature.
+     * @param ambientLoss The loss per degree, in thousandths of the conductivity of the node.
+     * @return The heat lost, or a negative amount if heat is gained.
+     */
+    private long ambientFlow (int node, int interval, double difference, long ambientLoss) {
+
+        final long limit = Math.abs(this.temperatures[node] - VoltaicsConfig.ambientTemperature) * this.masses[node];
+        final long loss = Math.min(limit, (long) Math.ceil(interval * this.conductivities[node] * ambientLoss * Math.abs(difference) / 1000D));
+        return difference > 0 ? loss : -loss;
+    }
+
+    /**
+     * Checks if a temperature is far enough from the ambient temperature to keep its region
+     * active.
+     *
+     * @param temperature The temperature to check.
+     * @return Whether or not the temperature is past the threshold.
+     */
+    private static boolean isHot (long temperature) {
+
+        return Math.abs(temperature - VoltaicsConfig.ambientTemperature) > VoltaicsConfig.heatActiveThreshold;
+    }
+
+    /**
+     * Checks if a side is one that links are stepped from.
+     *
+     * @param side The side to check.
+     * @return Whether or not the side is one of the forward sides.
+     */
+    private static boolean isForward (EnumFacing side) {
+
+        return side == EnumFacing.UP || side == EnumFacing.SOUTH || side == EnumFacing.EAST;
+    }
+
+    /**
+     * Gets the key of the region a position is in.
+     *
+     * @param pos The position.
+     * @return The packed position of the chunk section holding the position.
+     */
+    private static long regionKey (BlockPos pos) {
+
+        return EnergyTileRegistry.pack(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+    }
+
+    /**
+     * A chunk section holding at least one node.
+     */
+    private static class Region {
+
+        private final IntArrayList nodes = new IntArrayList();
+
+        /**
+         * Whether or not the region is being stepped.
+         */
+        private boolean active;
+    }
+}
@@ -3,6 +3,7 @@ package com.artillect.voltaics.power.implementation;
 import com.artillect.voltaics.power.IEnergyConsumer;
 import com.artillect.voltaics.power.IEnergyHolder;
 import com.artillect.voltaics.power.IEnergyProducer;
+import com.artillect.voltaics.power.IEnergyReservable;
 
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraftforge.common.util.INBTSerializable;
@@ -12,27 +13,12 @@ import net.minecraftforge.common.util.INBTSerializable;
  * implementations do not need to use all three. The INBTSerializable interface is also
  * optional.
  */
-public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IEnergyHolder, INBTSerializable<NBTTagCompound> {
+public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IEnergyHolder, IEnergyReservable, INBTSerializable<NBTTagCompound> {
     
     /**
-     * The amount of stored Joule power.
+     * The stored power, capacity and transfer rates of the container.
      */
-    private long stored;
-    
-    /**
-     * The maximum amount of Joule power that can be stored.
-     */
-    private long capacity;
-    
-    /**
-     * The maximum amount of Joule power that can be accepted.
-     */
-    private long inputRate;
-    
-    /**
-     * The maximum amount of Joule power that can be extracted
-     */
-    private long outputRate;
+    private final EnergyStorageCore core;
     
     /**
      * Default constructor. Sets capacity to 5000 and transfer rate to 50. This constructor
@@ -66,10 +52,7 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
      */
     public BaseEnergyContainer(long power, long capacity, long input, long output) {
         
-        this.stored = power;
-        this.capacity = capacity;
-        this.inputRate = input;
-        this.outputRate = output;
+        this.core = new EnergyStorageCore(power, capacity, input, output);
     }
     
     /**
@@ -82,22 +65,23 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
      */
     public BaseEnergyContainer(NBTTagCompound dataTag) {
         
+        this.core = new EnergyStorageCore(0, 0, 0, 0);
         this.deserializeNBT(dataTag);
     }
     
     @Override
     public long getStoredPower () {
         
-        return this.stored;
+        return this.core.getStored();
     }
     
     @Override
     public long givePower (long Joule, boolean simulated) {
         
-        final long acceptedJoule = Math.min(this.getCapacity() - this.stored, Math.min(this.getInputRate(), Joule));
+        final long acceptedJoule = this.core.give(Joule, simulated);
         
-        if (!simulated)
-            this.stored += acceptedJoule;
+        if (!simulated && acceptedJoule != 0)
+            this.onPowerChanged(acceptedJoule);
             
         return acceptedJoule;
     }
@@ -105,28 +89,70 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
     @Override
     public long takePower (long Joule, boolean simulated) {
         
-        final long removedPower = Math.min(this.stored, Math.min(this.getOutputRate(), Joule));
+        final long removedPower = this.core.take(Joule, simulated);
+        
+        if (!simulated && removedPower != 0)
+            this.onPowerChanged(-removedPower);
+            
+        return removedPower;
+    }
+    
+    @Override
+    public long reserveInput (long Joule) {
+        
+        return this.core.reserveInput(Joule);
+    }
+    
+    @Override
+    public long reserveOutput (long Joule) {
+        
+        return this.core.reserveOutput(Joule);
+    }
+    
+    @Override
+    public long settleInput (long reserved, long used) {
+        
+        final long acceptedJoule = this.core.settleInput(reserved, used);
+        
+        if (acceptedJoule != 0)
+            this.onPowerChanged(acceptedJoule);
+            
+        return acceptedJoule;
+    }
+    
+    @Override
+    public long settleOutput (long reserved, long used) {
+        
+        final long removedPower = this.core.settleOutput(reserved, used);
         
-        if (!simulated)
-            this.stored -= removedPower;
+        if (removedPower != 0)
+            this.onPowerChanged(-removedPower);
             
         return removedPower;
     }
     
+    /**
+     * Called whenever power is given to or taken from the container. Tiles can override this
+     * to find out when a neighbor has changed their stored power, for example to start
+     * ticking again.
+     * 
+     * @param change The amount of power that was added, or a negative amount if power was
+     *        taken.
+     */
+    protected void onPowerChanged (long change) {
+        
+    }
+    
     @Override
     public long getCapacity () {
         
-        return this.capacity;
+        return this.core.getCapacity();
     }
     
     @Override
     public NBTTagCompound serializeNBT () {
         
-        final NBTTagCompound dataTag = new NBTTagCompound();
-        dataTag.setLong("JoulePower", this.stored);
-        dataTag.setLong("JouleCapacity", this.capacity);
-        dataTag.setLong("JouleInput", this.inputRate);
-        dataTag.setLong("JouleOutput", this.outputRate);
+        final NBTTagCompound dataTag = this.core.writeToNBT(new NBTTagCompound());
         
         return dataTag;
     }
@@ -134,21 +160,22 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
     @Override
     public void deserializeNBT (NBTTagCompound nbt) {
         
-        this.stored = nbt.getLong("JoulePower");
-        
-        if (nbt.hasKey("JouleCapacity"))
-            this.capacity = nbt.getLong("JouleCapacity");
-            
-        if (nbt.hasKey("JouleInput"))
-            this.inputRate = nbt.getLong("JouleInput");
-            
-        if (nbt.hasKey("JouleOutput"))
-            this.outputRate = nbt.getLong("JouleOutput");
-            
-        if (this.stored > this.getCapacity())
-            this.stored = this.getCapacity();
+        this.core.readFromNBT(nbt);
     }
     
+    /**
+     * Sets the amount of stored power in the container. The amount will be clamped between
+     * zero and the capacity of the container.
+     *
+     * @param power The new amount of stored power.
+     * @return The instance of the container being updated.
+     */
+    public BaseEnergyContainer setStoredPower (long power) {
+
+        this.core.setStored(power);
+        return this;
+    }
+
     /**
      * Sets the capacity of the the container. If the existing stored power is more than the
      * new capacity, the stored power will be decreased to match the new capacity.
@@ -158,11 +185,7 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
      */
     public BaseEnergyContainer setCapacity (long capacity) {
         
-        this.capacity = capacity;
-        
-        if (this.stored > capacity)
-            this.stored = capacity;
-            
+        this.core.setCapacity(capacity);
         return this;
     }
     
@@ -173,7 +196,7 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
      */
     public long getInputRate () {
         
-        return this.inputRate;
+        return this.core.getInputRate();
     }
     
     /**
@@ -184,7 +207,7 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
      */
     public BaseEnergyContainer setInputRate (long rate) {
         
-        this.inputRate = rate;
+        this.core.setInputRate(rate);
         return this;
     }
     
@@ -195,7 +218,7 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
      */
     public long getOutputRate () {
         
-        return this.outputRate;
+        return this.core.getOutputRate();
     }
     
     /**
@@ -206,7 +229,7 @@ public class BaseEnergyContainer implements IEnergyConsumer, IEnergyProducer, IE
      */
     public BaseEnergyContainer setOutputRate (long rate) {
         
-        this.outputRate = rate;
+        this.core.setOutputRate(rate);
         return this;
     }
     
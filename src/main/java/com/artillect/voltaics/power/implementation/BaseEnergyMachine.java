@@ -10,24 +10,9 @@ import net.minecraftforge.common.util.INBTSerializable;
 public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSerializable<NBTTagCompound> {
     
     /**
-     * The amount of stored Joule power.
+     * The stored power, capacity and transfer rates of the machine.
      */
-    private long stored;
-    
-    /**
-     * The maximum amount of Joule power that can be stored.
-     */
-    private long capacity;
-    
-    /**
-     * The maximum amount of Joule power that can be accepted.
-     */
-    private long inputRate;
-    
-    /**
-     * The maximum amount of Joule power that can be extracted
-     */
-    private long outputRate;
+    private final EnergyStorageCore core;
     
     /**
      * Default constructor. Sets capacity to 5000 and transfer rate to 50. This constructor
@@ -61,10 +46,7 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
      */
     public BaseEnergyMachine(long power, long capacity, long input, long output) {
         
-        this.stored = power;
-        this.capacity = capacity;
-        this.inputRate = input;
-        this.outputRate = output;
+        this.core = new EnergyStorageCore(power, capacity, input, output);
     }
     
     /**
@@ -77,41 +59,33 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
      */
     public BaseEnergyMachine(NBTTagCompound dataTag) {
         
+        this.core = new EnergyStorageCore(0, 0, 0, 0);
         this.deserializeNBT(dataTag);
     }
     
     @Override
     public long getStoredPower () {
         
-        return this.stored;
+        return this.core.getStored();
     }
     
     @Override
     public long givePower (long Joule, boolean simulated) {
         
-        final long acceptedJoule = Math.min(this.getCapacity() - this.stored, Math.min(this.getInputRate(), Joule));
-        
-        if (!simulated)
-            this.stored += acceptedJoule;
-            
-        return acceptedJoule;
+        return this.core.give(Joule, simulated);
     }
    
 
     @Override
     public long getCapacity () {
         
-        return this.capacity;
+        return this.core.getCapacity();
     }
     
     @Override
     public NBTTagCompound serializeNBT () {
         
-        final NBTTagCompound dataTag = new NBTTagCompound();
-        dataTag.setLong("JoulePower", this.stored);
-        dataTag.setLong("JouleCapacity", this.capacity);
-        dataTag.setLong("JouleInput", this.inputRate);
-        dataTag.setLong("JouleOutput", this.outputRate);
+        final NBTTagCompound dataTag = this.core.writeToNBT(new NBTTagCompound());
         
         return dataTag;
     }
@@ -119,19 +93,7 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
     @Override
     public void deserializeNBT (NBTTagCompound nbt) {
         
-        this.stored = nbt.getLong("JoulePower");
-        
-        if (nbt.hasKey("JouleCapacity"))
-            this.capacity = nbt.getLong("JouleCapacity");
-            
-        if (nbt.hasKey("JouleInput"))
-            this.inputRate = nbt.getLong("JouleInput");
-            
-        if (nbt.hasKey("JouleOutput"))
-            this.outputRate = nbt.getLong("JouleOutput");
-            
-        if (this.stored > this.getCapacity())
-            this.stored = this.getCapacity();
+        this.core.readFromNBT(nbt);
     }
     
     /**
@@ -143,11 +105,7 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
      */
     public BaseEnergyMachine setCapacity (long capacity) {
         
-        this.capacity = capacity;
-        
-        if (this.stored > capacity)
-            this.stored = capacity;
-            
+        this.core.setCapacity(capacity);
         return this;
     }
     
@@ -158,7 +116,7 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
      */
     public long getInputRate () {
         
-        return this.inputRate;
+        return this.core.getInputRate();
     }
     
     /**
@@ -169,7 +127,7 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
      */
     public BaseEnergyMachine setInputRate (long rate) {
         
-        this.inputRate = rate;
+        this.core.setInputRate(rate);
         return this;
     }
     
@@ -180,7 +138,7 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
      */
     public long getOutputRate () {
         
-        return this.outputRate;
+        return this.core.getOutputRate();
     }
     
     /**
@@ -191,7 +149,7 @@ public class BaseEnergyMachine implements IEnergyConsumer, IEnergyHolder, INBTSe
      */
     public BaseEnergyMachine setOutputRate (long rate) {
         
-        this.outputRate = rate;
+        this.core.setOutputRate(rate);
         return this;
     }
     
@@ -3,6 +3,7 @@ package com.artillect.voltaics.power.implementation;
 import com.artillect.voltaics.power.IEnergyConsumer;
 import com.artillect.voltaics.power.IEnergyHolder;
 import com.artillect.voltaics.power.IEnergyProducer;
+import com.artillect.voltaics.power.IEnergyReservable;
 import com.artillect.voltaics.power.IHeat;
 
 import net.minecraft.nbt.NBTTagCompound;
@@ -13,29 +14,34 @@ import net.minecraftforge.common.util.INBTSerializable;
  * implementations do not need to use all three. The INBTSerializable interface is also
  * optional.
  */
-public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer, IEnergyHolder, INBTSerializable<NBTTagCompound> {
+public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer, IEnergyHolder, IEnergyReservable, INBTSerializable<NBTTagCompound> {
     
     /**
-     * The amount of stored Joule power.
+     * The amount of heat needed to raise the temperature by one degree, used when nothing else
+     * is set.
      */
-    private long stored;
+    public static final long DEFAULT_THERMAL_MASS = 100;
     
     /**
-     * The maximum amount of Joule power that can be stored.
+     * The amount of heat moved to a neighbor per tick for every degree of difference, used when
+     * nothing else is set.
      */
-    private long capacity;
+    public static final long DEFAULT_CONDUCTIVITY = 10;
     
     /**
-     * The maximum amount of Joule power that can be accepted.
+     * The stored power, capacity and transfer rates of the machine.
      */
-    private long inputRate;
+    private final EnergyStorageCore core;
     
     /**
-     * The maximum amount of Joule power that can be extracted
+     * The amount of heat held by the machine. The temperature is this divided by the thermal
+     * mass, so heat smaller than a degree is not lost.
      */
-    private long outputRate;
+    private long heat;
     
-    private long temperature;
+    private long thermalMass = DEFAULT_THERMAL_MASS;
+    
+    private long conductivity = DEFAULT_CONDUCTIVITY;
     
     private long meltingPoint;
     
@@ -71,11 +77,8 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
      */
     public BaseHeatMachine(long power, long capacity, long input, long output, long temperature, long meltingPoint) {
         
-        this.stored = power;
-        this.capacity = capacity;
-        this.inputRate = input;
-        this.outputRate = output;
-        this.temperature = temperature;
+        this.core = new EnergyStorageCore(power, capacity, input, output);
+        this.heat = temperature * this.thermalMass;
         this.meltingPoint = meltingPoint;
     }
     
@@ -89,22 +92,23 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
      */
     public BaseHeatMachine(NBTTagCompound dataTag) {
         
+        this.core = new EnergyStorageCore(0, 0, 0, 0);
         this.deserializeNBT(dataTag);
     }
     
     @Override
     public long getStoredPower () {
         
-        return this.stored;
+        return this.core.getStored();
     }
     
     @Override
     public long givePower (long Joule, boolean simulated) {
         
-        final long acceptedJoule = Math.min(this.getCapacity() - this.stored, Math.min(this.getInputRate(), Joule));
+        final long acceptedJoule = this.core.give(Joule, simulated);
         
-        if (!simulated)
-            this.stored += acceptedJoule;
+        if (!simulated && acceptedJoule != 0)
+            this.onPowerChanged(acceptedJoule);
             
         return acceptedJoule;
     }
@@ -112,23 +116,69 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
     @Override
     public long takePower (long Joule, boolean simulated) {
         
-        final long removedPower = Math.min(this.stored, Math.min(this.getOutputRate(), Joule));
+        final long removedPower = this.core.take(Joule, simulated);
         
-        if (!simulated)
-            this.stored -= removedPower;
+        if (!simulated && removedPower != 0)
+            this.onPowerChanged(-removedPower);
+            
+        return removedPower;
+    }
+    
+    @Override
+    public long reserveInput (long Joule) {
+        
+        return this.core.reserveInput(Joule);
+    }
+    
+    @Override
+    public long reserveOutput (long Joule) {
+        
+        return this.core.reserveOutput(Joule);
+    }
+    
+    @Override
+    public long settleInput (long reserved, long used) {
+        
+        final long acceptedJoule = this.core.settleInput(reserved, used);
+        
+        if (acceptedJoule != 0)
+            this.onPowerChanged(acceptedJoule);
+            
+        return acceptedJoule;
+    }
+    
+    @Override
+    public long settleOutput (long reserved, long used) {
+        
+        final long removedPower = this.core.settleOutput(reserved, used);
+        
+        if (removedPower != 0)
+            this.onPowerChanged(-removedPower);
             
         return removedPower;
     }
     
+    /**
+     * Called whenever power is given to or taken from the container. Tiles can override this
+     * to find out when a neighbor has changed their stored power, for example to start
+     * ticking again.
+     * 
+     * @param change The amount of power that was added, or a negative amount if power was
+     *        taken.
+     */
+    protected void onPowerChanged (long change) {
+        
+    }
+    
     @Override
     public long getCapacity () {
         
-        return this.capacity;
+        return this.core.getCapacity();
     }
     
     @Override
     public long getTemperature () {
-    	return this.temperature;
+    	return this.heat / this.thermalMass;
     }
     
     @Override
@@ -136,34 +186,45 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
     	return this.meltingPoint;
     }
     
+    @Override
+    public long getThermalMass () {
+        
+        return this.thermalMass;
+    }
+    
+    @Override
+    public long getConductivity () {
+        
+        return this.conductivity;
+    }
+    
     @Override
     public long giveHeat (long heat, boolean simulated) {
-        final long acceptedHeat = 1;
+        final long acceptedHeat = Math.max(0, Math.min(heat, Long.MAX_VALUE - this.heat));
         
         if (!simulated)
-            this.temperature += acceptedHeat;
+            this.heat += acceptedHeat;
             
         return acceptedHeat;
     }
     
 	@Override
 	public long takeHeat(long heat, boolean simulated) {
-		final long takenHeat = 1;
+		final long takenHeat = Math.max(0, Math.min(heat, this.heat));
 		
 		if (!simulated)
-			this.temperature -= takenHeat;
+			this.heat -= takenHeat;
 		return takenHeat;
 	}
     
     @Override
     public NBTTagCompound serializeNBT () {
         
-        final NBTTagCompound dataTag = new NBTTagCompound();
-        dataTag.setLong("JoulePower", this.stored);
-        dataTag.setLong("JouleCapacity", this.capacity);
-        dataTag.setLong("JouleInput", this.inputRate);
-        dataTag.setLong("JouleOutput", this.outputRate);
-        dataTag.setLong("HeatTemperature", this.temperature);
+        final NBTTagCompound dataTag = this.core.writeToNBT(new NBTTagCompound());
+        dataTag.setLong("HeatTemperature", this.getTemperature());
+        dataTag.setLong("HeatEnergy", this.heat);
+        dataTag.setLong("HeatMass", this.thermalMass);
+        dataTag.setLong("HeatConductivity", this.conductivity);
         dataTag.setLong("HeatMeltingPoint", this.meltingPoint);
         
         return dataTag;
@@ -172,25 +233,73 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
     @Override
     public void deserializeNBT (NBTTagCompound nbt) {
         
-        this.stored = nbt.getLong("JoulePower");
+        this.core.readFromNBT(nbt);
         
-        if (nbt.hasKey("JouleCapacity"))
-            this.capacity = nbt.getLong("JouleCapacity");
+        if (nbt.hasKey("HeatMass"))
+            this.thermalMass = Math.max(1, nbt.getLong("HeatMass"));
             
-        if (nbt.hasKey("JouleInput"))
-            this.inputRate = nbt.getLong("JouleInput");
+        if (nbt.hasKey("HeatConductivity"))
+            this.conductivity = nbt.getLong("HeatConductivity");
             
-        if (nbt.hasKey("JouleOutput"))
-            this.outputRate = nbt.getLong("JouleOutput");
+        if (nbt.hasKey("HeatEnergy"))
+            this.heat = nbt.getLong("HeatEnergy");
             
-        if (this.stored > this.getCapacity())
-            this.stored = this.getCapacity();
-        
-        if (nbt.hasKey("HeatTemperature"))
-            this.temperature = nbt.getLong("HeatTemperature");
+        else if (nbt.hasKey("HeatTemperature"))
+            this.heat = nbt.getLong("HeatTemperature") * this.thermalMass;
         
         if (nbt.hasKey("HeatMeltingPoint"))
-            this.temperature = nbt.getLong("HeatMeltingPoint");
+            this.meltingPoint = nbt.getLong("HeatMeltingPoint");
+    }
+    
+    /**
+     * Sets the amount of stored power in the machine. The amount will be clamped between
+     * zero and the capacity of the machine.
+     *
+     * @param power The new amount of stored power.
+     * @return The instance of the machine being updated.
+     */
+    public BaseHeatMachine setStoredPower (long power) {
+        
+        this.core.setStored(power);
+        return this;
+    }
+    
+    /**
+     * Sets the temperature of the machine, replacing the heat it holds.
+     * 
+     * @param temperature The new temperature.
+     * @return The instance of the machine being updated.
+     */
+    public BaseHeatMachine setTemperature (long temperature) {
+        
+        this.heat = Math.max(0, temperature) * this.thermalMass;
+        return this;
+    }
+    
+    /**
+     * Sets the thermal mass of the machine, keeping its temperature the same.
+     * 
+     * @param mass The amount of heat needed to raise the temperature by one degree.
+     * @return The instance of the machine being updated.
+     */
+    public BaseHeatMachine setThermalMass (long mass) {
+        
+        final long temperature = this.getTemperature();
+        this.thermalMass = Math.max(1, mass);
+        this.heat = temperature * this.thermalMass;
+        return this;
+    }
+    
+    /**
+     * Sets how well the machine conducts heat to its neighbors.
+     * 
+     * @param conductivity The amount of heat moved per tick for every degree of difference.
+     * @return The instance of the machine being updated.
+     */
+    public BaseHeatMachine setConductivity (long conductivity) {
+        
+        this.conductivity = Math.max(0, conductivity);
+        return this;
     }
     
     /**
@@ -202,11 +311,7 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
      */
     public BaseHeatMachine setCapacity (long capacity) {
         
-        this.capacity = capacity;
-        
-        if (this.stored > capacity)
-            this.stored = capacity;
-            
+        this.core.setCapacity(capacity);
         return this;
     }
     
@@ -217,7 +322,7 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
      */
     public long getInputRate () {
         
-        return this.inputRate;
+        return this.core.getInputRate();
     }
     
     /**
@@ -228,7 +333,7 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
      */
     public BaseHeatMachine setInputRate (long rate) {
         
-        this.inputRate = rate;
+        this.core.setInputRate(rate);
         return this;
     }
     
@@ -239,7 +344,7 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
      */
     public long getOutputRate () {
         
-        return this.outputRate;
+        return this.core.getOutputRate();
     }
     
     /**
@@ -250,7 +355,7 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
      */
     public BaseHeatMachine setOutputRate (long rate) {
         
-        this.outputRate = rate;
+        this.core.setOutputRate(rate);
         return this;
     }
     
@@ -267,6 +372,4 @@ public class BaseHeatMachine implements IHeat, IEnergyConsumer, IEnergyProducer,
         this.setOutputRate(rate);
         return this;
     }
-
-
 }
\ No newline at end of file
@@ -0,0 +1,275 @@
+package com.artillect.voltaics.power.implementation;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * The stored power, capacity and transfer rates shared by every Joule container, along with
+ * the logic for moving power in and out. The containers wrap a core rather than repeating this
+ * logic, and the core is final and only reads its own fields so that calls into it can be
+ * inlined. Overriding the getters of a container does not change how the core behaves.
+ *
+ * The core can also hold power and free space for a transaction. Reserved power and space
+ * can not be used by anything else until the reservation is settled. Reservations only last
+ * for the duration of a transaction and are never saved.
+ */
+public final class EnergyStorageCore {
+
+    /**
+     * The amount of stored Joule power.
+     */
+    private long stored;
+
+    /**
+     * The maximum amount of Joule power that can be stored.
+     */
+    private long capacity;
+
+    /**
+     * The maximum amount of Joule power that can be accepted.
+     */
+    private long inputRate;
+
+    /**
+     * The maximum amount of Joule power that can be extracted
+     */
+    private long outputRate;
+
+    /**
+     * The amount of free space held for reservations that have not been settled.
+     */
+    private long reservedInput;
+
+    /**
+     * The amount of stored power held for reservations that have not been settled.
+     */
+    private long reservedOutput;
+
+    /**
+     * Constructor for setting all of the values of the core.
+     *
+     * @param power The amount of stored power to initialize the core with.
+     * @param capacity The maximum amount of Joule power that the core should hold.
+     * @param input The maximum rate of power that can be accepted at a time.
+     * @param output The maximum rate of power that can be extracted at a time.
+     */
+    public EnergyStorageCore(long power, long capacity, long input, long output) {
+
+        this.stored = power;
+        this.capacity = capacity;
+        this.inputRate = input;
+        this.outputRate = output;
+    }
+
+    /**
+     * Adds power to the core, limited by the unreserved free space and the input rate.
+     *
+     * @param Joule The amount of power being offered.
+     * @param simulated Whether or not this is being ran as part of a simulation.
+     * @return The amount of power that was accepted.
+     */
+    public long give (long Joule, boolean simulated) {
+
+        final long acceptedJoule = Math.max(0, Math.min(this.capacity - this.stored - this.reservedInput, Math.min(this.inputRate, Joule)));
+
+        if (!simulated)
+            this.stored += acceptedJoule;
+
+        return acceptedJoule;
+    }
+
+    /**
+     * Removes power from the core, limited by the unreserved stored power and the output rate.
+     *
+     * @param Joule The amount of power being requested.
+     * @param simulated Whether or not this is being ran as part of a simulation.
+     * @return The amount of power that was removed.
+     */
+    public long take (long Joule, boolean simulated) {
+
+        final long removedPower = Math.max(0, Math.min(this.stored - this.reservedOutput, Math.min(this.outputRate, Joule)));
+
+        if (!simulated)
+            this.stored -= removedPower;
+
+        return removedPower;
+    }
+
+    /**
+     * Reserves free space in the core, limited by the unreserved space and the input rate.
+     *
+     * @param Joule The amount of power that may be given.
+     * @return The amount of space that was reserved.
+     */
+    public long reserveInput (long Joule) {
+
+        final long reserved = this.give(Joule, true);
+        this.reservedInput += reserved;
+        return reserved;
+    }
+
+    /**
+     * Reserves stored power in the core, limited by the unreserved power and the output rate.
+     *
+     * @param Joule The amount of power that may be taken.
+     * @return The amount of power that was reserved.
+     */
+    public long reserveOutput (long Joule) {
+
+        final long reserved = this.take(Joule, true);
+        this.reservedOutput += reserved;
+        return reserved;
+    }
+
+    /**
+     * Settles a reservation of free space, adding some or all of the reserved amount.
+     *
+     * @param reserved The amount that was reserved.
+     * @param used The amount of power to add.
+     * @return The amount of power that was added.
+     */
+    public long settleInput (long reserved, long used) {
+
+        this.reservedInput -= reserved;
+        final long acceptedJoule = Math.max(0, Math.min(Math.min(reserved, used), this.capacity - this.stored));
+        this.stored += acceptedJoule;
+        return acceptedJoule;
+    }
+
+    /**
+     * Settles a reservation of stored power, removing some or all of the reserved amount.
+     *
+     * @param reserved The amount that was reserved.
+     * @param used The amount of power to remove.
+     * @return The amount of power that was removed.
+     */
+    public long settleOutput (long reserved, long used) {
+
+        this.reservedOutput -= reserved;
+        final long removedPower = Math.max(0, Math.min(Math.min(reserved, used), this.stored));
+        this.stored -= removedPower;
+        return removedPower;
+    }
+
+    /**
+     * Gets the amount of stored power.
+     *
+     * @return The amount of stored Joule power.
+     */
+    public long getStored () {
+
+        return this.stored;
+    }
+
+    /**
+     * Sets the amount of stored power. The amount will be clamped between zero and the
+     * capacity.
+     *
+     * @param power The new amount of stored power.
+     */
+    public void setStored (long power) {
+
+        this.stored = Math.max(0, Math.min(this.capacity, power));
+    }
+
+    /**
+     * Gets the capacity.
+     *
+     * @return The maximum amount of Joule power that can be stored.
+     */
+    public long getCapacity () {
+
+        return this.capacity;
+    }
+
+    /**
+     * Sets the capacity. If the existing stored power is more than the new capacity, the
+     * stored power will be decreased to match the new capacity.
+     *
+     * @param capacity The new capacity.
+     */
+    public void setCapacity (long capacity) {
+
+        this.capacity = capacity;
+
+        if (this.stored > capacity)
+            this.stored = capacity;
+    }
+
+    /**
+     * Gets the input rate.
+     *
+     * @return The amount of Joule power that can be accepted at a time.
+     */
+    public long getInputRate () {
+
+        return this.inputRate;
+    }
+
+    /**
+     * Sets the input rate.
+     *
+     * @param rate The amount of Joule power to accept at a time.
+     */
+    public void setInputRate (long rate) {
+
+        this.inputRate = rate;
+    }
+
+    /**
+     * Gets the output rate.
+     *
+     * @return The amount of Joule power that can be extracted at a time.
+     */
+    public long getOutputRate () {
+
+        return this.outputRate;
+    }
+
+    /**
+     * Sets the output rate.
+     *
+     * @param rate The amount of Joule power that can be extracted at a time.
+     */
+    public void setOutputRate (long rate) {
+
+        this.outputRate = rate;
+    }
+
+    /**
+     * Writes the core to a compound tag.
+     *
+     * @param dataTag The tag to write to.
+     * @return The same tag.
+     */
+    public NBTTagCompound writeToNBT (NBTTagCompound dataTag) {
+
+        dataTag.setLong("JoulePower", this.stored);
+        dataTag.setLong("JouleCapacity", this.capacity);
+        dataTag.setLong("JouleInput", this.inputRate);
+        dataTag.setLong("JouleOutput", this.outputRate);
+        return dataTag;
+    }
+
+    /**
+     * Reads the core from a compound tag. The stored power is always read, while the capacity
+     * and rates are only read if they have been written.
+     *
+     * @param nbt The tag to read from.
+     */
+    public void readFromNBT (NBTTagCompound nbt) {
+
+        this.stored = nbt.getLong("JoulePower");
+
+        if (nbt.hasKey("JouleCapacity"))
+            this.capacity = nbt.getLong("JouleCapacity");
+
+        if (nbt.hasKey("JouleInput"))
+            this.inputRate = nbt.getLong("JouleInput");
+
+        if (nbt.hasKey("JouleOutput"))
+            this.outputRate = nbt.getLong("JouleOutput");
+
+        if (this.stored > this.capacity)
+            this.stored = this.capacity;
+    }
+}
@@ -1,14 +1,24 @@
 package com.artillect.voltaics.proxy;
 
 import com.artillect.voltaics.RegistryManager;
+import com.artillect.voltaics.capability.EnergyCapabilities;
+import com.artillect.voltaics.capability.HeatCapabilities;
+import com.artillect.voltaics.event.WorldTickHandler;
+import com.artillect.voltaics.network.PacketHandler;
+
 import net.minecraft.item.Item;
+import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.fml.common.event.FMLInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPostInitializationEvent;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
 
 public class CommonProxy {
     public void preInit(FMLPreInitializationEvent e) {
+		EnergyCapabilities.register();
+		HeatCapabilities.register();
 		RegistryManager.registerAll();
+		PacketHandler.registerMessages();
+		MinecraftForge.EVENT_BUS.register(new WorldTickHandler());
     }
 
     public void init(FMLInitializationEvent e) {
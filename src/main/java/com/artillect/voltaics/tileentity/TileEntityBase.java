@@ -0,0 +1,295 @@
+package com.artillect.voltaics.tileentity;
+
+import com.artillect.voltaics.VoltaicsConfig;
+import com.artillect.voltaics.capability.EnergyCapabilities;
+import com.artillect.voltaics.capability.HeatCapabilities;
+import com.artillect.voltaics.lib.CapabilityDispatch;
+import com.artillect.voltaics.lib.EnergyTileRegistry;
+import com.artillect.voltaics.lib.NeighborCache;
+import com.artillect.voltaics.lib.TickScheduler;
+import com.artillect.voltaics.network.TileSyncManager;
+import com.artillect.voltaics.power.IEnergyHolder;
+import com.artillect.voltaics.power.IHeat;
+import com.artillect.voltaics.power.heat.ThermalManager;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.capabilities.Capability;
+
+public abstract class TileEntityBase extends TileEntity {
+	public static final int SYNC_CONNECTIONS = 0, SYNC_POWER = 1, SYNC_TEMPERATURE = 2;
+	public static final int SYNC_FIELDS = 3;
+	//fields only sent to players inspecting the tile, see TileSyncManager
+	public static final int READOUT_FIELDS = 1 << SYNC_POWER | 1 << SYNC_TEMPERATURE;
+	//a synced mask bit at SYNC_FIELDS + field carries the rate of that readout field
+	public static final int SYNC_SLOTS = SYNC_FIELDS * 2;
+	//readout rates are sent in thousandths of a unit per tick
+	public static final long SYNC_RATE_SCALE = 1000;
+	protected final NeighborCache neighbors = new NeighborCache(this);
+	private boolean asleep = false;
+	private CapabilityDispatch dispatch = new CapabilityDispatch();
+	private Object[] handlers = new Object[0];
+	private final long[] synced = new long[SYNC_FIELDS];
+	private int syncedMask = 0;
+	private long[] readoutValues, readoutRates, readoutTimes;
+	private int readoutMask = 0;
+
+	/**
+	 * Sets the capabilities exposed by the tile. Should be called from the constructor.
+	 *
+	 * @param dispatch The table of capabilities, shared by every tile of the class.
+	 * @param handlers The handler for each slot of the table, in the order they were added.
+	 */
+	protected void setCapabilities(CapabilityDispatch dispatch, Object... handlers){
+		if (handlers.length != dispatch.size()){
+			throw new IllegalArgumentException("Expected " + dispatch.size() + " capability handlers but got " + handlers.length);
+		}
+		this.dispatch = dispatch;
+		this.handlers = handlers;
+	}
+
+	@Override
+	public boolean hasCapability(Capability<?> capability, EnumFacing facing){
+		return dispatch.getSlot(capability, facing) >= 0 || super.hasCapability(capability, facing);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getCapability(Capability<T> capability, EnumFacing facing){
+		int slot = dispatch.getSlot(capability, facing);
+		return slot >= 0 ? (T) handlers[slot] : super.getCapability(capability, facing);
+	}
+
+	public NeighborCache getNeighbors(){
+		return neighbors;
+	}
+
+	public void onNeighborChanged(BlockPos neighbor){
+		neighbors.invalidate(neighbor);
+		wake();
+	}
+
+	public boolean isAsleep(){
+		return asleep;
+	}
+
+	/**
+	 * Stops the tile from ticking until it is woken up again.
+	 *
+	 * @param ticks The amount of ticks to sleep for before checking again, or 0 to sleep until
+	 *        a neighbor or the stored power changes.
+	 */
+	protected void sleep(int ticks){
+		if (!asleep && getWorld() != null && !getWorld().isRemote){
+			asleep = true;
+			TickScheduler.get(getWorld()).sleep(this, ticks);
+		}
+	}
+
+	public void wake(){
+		if (asleep){
+			asleep = false;
+			TickScheduler.get(getWorld()).wake(this);
+		}
+	}
+
+	/**
+	 * Lets the thermal simulation know that the tile changed its own heat, so the heat can
+	 * spread to its neighbors.
+	 */
+	protected void heatChanged(){
+		if (getWorld() != null && !getWorld().isRemote){
+			ThermalManager.get(getWorld()).wake(this);
+		}
+	}
+
+	/**
+	 * Gets the fields this tile keeps in sync with the client.
+	 *
+	 * @return A bit mask of the synced field indices.
+	 */
+	protected int getSyncFields(){
+		return 0;
+	}
+
+	public boolean hasSyncFields(){
+		return getSyncFields() != 0;
+	}
+
+	/**
+	 * Gets the current value of a synced field, on the server.
+	 */
+	protected long getSyncValue(int field){
+		return 0;
+	}
+
+	/**
+	 * Applies a synced field received from the server, on the client.
+	 */
+	protected void setSyncValue(int field, long value){
+	}
+
+	/**
+	 * Collects the synced fields that changed since they were last collected, and remembers
+	 * their new values. Every field counts as changed the first time. Readout fields are left
+	 * out, they are collected separately for each player inspecting the tile.
+	 *
+	 * @param values The array to write the value of each changed field into.
+	 * @return A bit mask of the fields that changed.
+	 */
+	public int collectSyncDelta(long[] values){
+		int fields = getSyncFields() & ~READOUT_FIELDS;
+		int mask = 0;
+		for (int field = 0; field < SYNC_FIELDS; field++){
+			if ((fields & 1 << field) == 0){
+				continue;
+			}
+			long value = getSyncValue(field);
+			if ((syncedMask & 1 << field) == 0 || synced[field] != value){
+				synced[field] = value;
+				values[field] = value;
+				mask |= 1 << field;
+			}
+		}
+		syncedMask |= mask;
+		return mask;
+	}
+
+	/**
+	 * Collects the current value of every synced field, without touching what was last
+	 * collected as changed.
+	 *
+	 * @param values The array to write the value of each field into.
+	 * @return A bit mask of the fields this tile has.
+	 */
+	public int collectSyncState(long[] values){
+		int fields = getSyncFields();
+		for (int field = 0; field < SYNC_FIELDS; field++){
+			if ((fields & 1 << field) != 0){
+				values[field] = getSyncValue(field);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Collects the current value of the readout fields this tile has.
+	 *
+	 * @param wanted A bit mask of the readout fields to collect.
+	 * @param values The array to write the value of each collected field into.
+	 * @return A bit mask of the fields that were collected.
+	 */
+	public int collectReadout(int wanted, long[] values){
+		int fields = getSyncFields() & READOUT_FIELDS & wanted;
+		for (int field = 0; field < SYNC_FIELDS; field++){
+			if ((fields & 1 << field) != 0){
+				values[field] = getSyncValue(field);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Applies synced fields received from the server, on the client. Readout fields also
+	 * remember the rate they were changing at, so they can be extrapolated until the next
+	 * update.
+	 *
+	 * @param mask A bit mask of the slots that were received.
+	 * @param values The value of each received slot.
+	 */
+	public void applySyncDelta(int mask, long[] values){
+		for (int field = 0; field < SYNC_FIELDS; field++){
+			if ((mask & 1 << field) == 0){
+				continue;
+			}
+			setSyncValue(field, values[field]);
+			if ((READOUT_FIELDS & 1 << field) != 0 && getWorld() != null){
+				if (readoutValues == null){
+					readoutValues = new long[SYNC_FIELDS];
+					readoutRates = new long[SYNC_FIELDS];
+					readoutTimes = new long[SYNC_FIELDS];
+				}
+				readoutValues[field] = values[field];
+				readoutRates[field] = (mask & 1 << SYNC_FIELDS + field) != 0 ? values[SYNC_FIELDS + field] : 0;
+				readoutTimes[field] = getWorld().getTotalWorldTime();
+				readoutMask |= 1 << field;
+			}
+		}
+	}
+
+	/**
+	 * Gets a readout field as it should be shown on the client, extrapolated from the value and
+	 * rate last received so displays move smoothly between the sparse readout updates.
+	 *
+	 * @param field The readout field to get.
+	 * @return The extrapolated value, never below zero or above the capacity for power.
+	 */
+	public long getReadout(int field){
+		if ((readoutMask & 1 << field) == 0){
+			return getSyncValue(field);
+		}
+		//keep going for up to two readout intervals, in case an update arrives late
+		long elapsed = Math.min(getWorld().getTotalWorldTime() - readoutTimes[field], 2L * VoltaicsConfig.readoutSyncInterval);
+		long value = Math.max(0, readoutValues[field] + readoutRates[field] * elapsed / SYNC_RATE_SCALE);
+		if (field == SYNC_POWER){
+			IEnergyHolder holder = getCapability(EnergyCapabilities.CAPABILITY_HOLDER, null);
+			if (holder != null){
+				value = Math.min(value, holder.getCapacity());
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Queues the synced fields that changed to be sent to the players watching the tile at the
+	 * end of the tick, along with every other tile synced that tick.
+	 */
+	protected void sync(){
+		if (getWorld() == null || getWorld().isRemote){
+			return;
+		}
+		TileSyncManager.get(getWorld()).queue(this);
+	}
+
+	@Override
+	public void onLoad(){
+		if (!getWorld().isRemote){
+			EnergyTileRegistry.get(getWorld()).add(this);
+			EnergyTileRegistry.get(getWorld()).notifyNeighbors(this);
+			if (hasSyncFields()){
+				sync();
+			}
+			IHeat heat = getCapability(HeatCapabilities.CAPABILITY_HEAT, null);
+			if (heat != null){
+				ThermalManager.get(getWorld()).add(this, heat);
+			}
+		}
+	}
+
+	@Override
+	public void invalidate(){
+		super.invalidate();
+		neighbors.invalidate();
+		if (getWorld() != null && !getWorld().isRemote){
+			EnergyTileRegistry.get(getWorld()).remove(this);
+			ThermalManager.get(getWorld()).remove(this);
+		}
+		if (asleep){
+			TickScheduler.get(getWorld()).forget(this);
+		}
+	}
+
+	@Override
+	public void onChunkUnload(){
+		neighbors.invalidate();
+		if (!getWorld().isRemote){
+			EnergyTileRegistry.get(getWorld()).remove(this);
+			EnergyTileRegistry.get(getWorld()).notifyNeighbors(this);
+			ThermalManager.get(getWorld()).remove(this);
+		}
+		if (asleep){
+			TickScheduler.get(getWorld()).forget(this);
+		}
+	}
+}
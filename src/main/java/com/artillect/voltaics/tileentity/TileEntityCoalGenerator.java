@@ -2,27 +2,47 @@ package com.artillect.voltaics.tileentity;
 
 import com.artillect.voltaics.capability.EnergyCapabilities;
 import com.artillect.voltaics.capability.HeatCapabilities;
+import com.artillect.voltaics.lib.CapabilityDispatch;
 import com.artillect.voltaics.power.implementation.BaseHeatMachine;
 
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.tileentity.TileEntity;
-import net.minecraft.util.EnumFacing;
-import net.minecraft.util.ITickable;
-import net.minecraftforge.common.capabilities.Capability;
 
-public class TileEntityCoalGenerator extends TileEntity implements ITickable {
-	private BaseHeatMachine container;
+public class TileEntityCoalGenerator extends TileEntityBase {
+	private static final CapabilityDispatch CAPABILITIES = new CapabilityDispatch()
+			.add(EnergyCapabilities.CAPABILITY_CONSUMER)
+			.add(EnergyCapabilities.CAPABILITY_HOLDER)
+			.add(HeatCapabilities.CAPABILITY_HEAT);
+	
+	private BaseHeatMachine container = new BaseHeatMachine();
+	
+	public TileEntityCoalGenerator() {
+		setCapabilities(CAPABILITIES, container, container, container);
+	}
 	
 	@Override
-	public void update() {
-		// TODO Auto-generated method stub
-		
+	protected int getSyncFields(){
+		return 1 << SYNC_POWER | 1 << SYNC_TEMPERATURE;
+	}
+	
+	@Override
+	protected long getSyncValue(int field){
+		return field == SYNC_POWER ? this.container.getStoredPower() : this.container.getTemperature();
+	}
+	
+	@Override
+	protected void setSyncValue(int field, long value){
+		if (field == SYNC_POWER){
+			this.container.setStoredPower(value);
+		}
+		else {
+			this.container.setTemperature(value);
+		}
 	}
 	
 	@Override
 	public void readFromNBT(NBTTagCompound compound) {
 		super.readFromNBT(compound);
-		this.container = new BaseHeatMachine(compound.getCompoundTag("HeatContainer"));
+		this.container.deserializeNBT(compound.getCompoundTag("JouleContainer"));
 	}
 	
 	@Override
@@ -34,23 +54,4 @@ public class TileEntityCoalGenerator extends TileEntity implements ITickable {
 	public NBTTagCompound getUpdateTag() {
 		return writeToNBT(new NBTTagCompound());
 	}
-
-	@Override
-    @SuppressWarnings("unchecked")
-    public <T> T getCapability (Capability<T> capability, EnumFacing facing) {
-
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_HOLDER)
-            return (T) this.container;
-            
-        return super.getCapability(capability, facing);
-    }
-    
-    @Override
-    public boolean hasCapability (Capability<?> capability, EnumFacing facing) {
-
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_HOLDER || capability == HeatCapabilities.CAPABILITY_HEAT)
-            return true;
-            
-        return super.hasCapability(capability, facing);
-    }
 }
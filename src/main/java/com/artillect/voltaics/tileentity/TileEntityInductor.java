@@ -2,28 +2,34 @@ package com.artillect.voltaics.tileentity;
 
 import com.artillect.voltaics.capability.EnergyCapabilities;
 import com.artillect.voltaics.capability.HeatCapabilities;
-import com.artillect.voltaics.lib.JouleUtils;
-import com.artillect.voltaics.power.implementation.BaseEnergyContainer;
+import com.artillect.voltaics.lib.CapabilityDispatch;
 import com.artillect.voltaics.power.implementation.BaseHeatMachine;
 
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.tileentity.TileEntity;
-import net.minecraft.util.EnumFacing;
 import net.minecraft.util.ITickable;
-import net.minecraftforge.common.capabilities.Capability;
 
-public class TileEntityInductor extends TileEntity implements ITickable {
+public class TileEntityInductor extends TileEntityBase implements ITickable {
+	private static final CapabilityDispatch CAPABILITIES = new CapabilityDispatch()
+			.add(EnergyCapabilities.CAPABILITY_CONSUMER)
+			.add(EnergyCapabilities.CAPABILITY_HOLDER)
+			.add(HeatCapabilities.CAPABILITY_HEAT);
 
 	private BaseHeatMachine container;
 	
 	public TileEntityInductor() {
-		this.container = new BaseHeatMachine(0, 1000, 50, 50, 70, 1200);
+		this.container = new BaseHeatMachine(0, 1000, 50, 50, 70, 1200) {
+			@Override
+			protected void onPowerChanged(long change){
+				wake();
+			}
+		};
+		setCapabilities(CAPABILITIES, container, container, container);
 	}
 	
 	@Override
 	public void readFromNBT(NBTTagCompound compound) {
 		super.readFromNBT(compound);
-		this.container = new BaseHeatMachine(compound.getCompoundTag("HeatContainer"));
+		this.container.deserializeNBT(compound.getCompoundTag("JouleContainer"));
 	}
 	
 	@Override
@@ -36,33 +42,34 @@ public class TileEntityInductor extends TileEntity implements ITickable {
 		return writeToNBT(new NBTTagCompound());
 	}
 	
-    @Override
-    @SuppressWarnings("unchecked")
-    public <T> T getCapability (Capability<T> capability, EnumFacing facing) {
-
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_HOLDER)
-            return (T) this.container;
-            
-        return super.getCapability(capability, facing);
-    }
-    
-    @Override
-    public boolean hasCapability (Capability<?> capability, EnumFacing facing) {
-
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_HOLDER || capability == HeatCapabilities.CAPABILITY_HEAT)
-            return true;
-            
-        return super.hasCapability(capability, facing);
-    }
-
+	@Override
+	protected int getSyncFields(){
+		return 1 << SYNC_POWER | 1 << SYNC_TEMPERATURE;
+	}
+	
+	@Override
+	protected long getSyncValue(int field){
+		return field == SYNC_POWER ? this.container.getStoredPower() : this.container.getTemperature();
+	}
+	
+	@Override
+	protected void setSyncValue(int field, long value){
+		if (field == SYNC_POWER){
+			this.container.setStoredPower(value);
+		}
+		else {
+			this.container.setTemperature(value);
+		}
+	}
+	
     @Override
     public void update() {
-    	//this.container.givePower(JouleUtils.consumePowerFromAllFaces(this.getWorld(), pos, Math.min(this.container.getCapacity()-this.container.getStoredPower(), this.container.getInputRate()), false), false);
-    	/* if (this.container.getStoredPower() >= 50) {
-    		this.container.takePower(50, false);
-    		this.container.giveHeat(1, false);
-    	} */
-    	
-    	if ()
+    	if (this.container.getStoredPower() >= 50) {
+    		this.container.giveHeat(this.container.takePower(50, false), false);
+    		heatChanged();
+    	}
+    	else {
+    		sleep(0);
+    	}
     }
 }
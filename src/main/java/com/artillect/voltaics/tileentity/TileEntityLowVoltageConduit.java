@@ -2,22 +2,32 @@ package com.artillect.voltaics.tileentity;
 
 import javax.annotation.Nullable;
 import com.artillect.voltaics.capability.EnergyCapabilities;
-import com.artillect.voltaics.power.implementation.BaseEnergyContainer;
+import com.artillect.voltaics.lib.CapabilityDispatch;
+import com.artillect.voltaics.power.IEnergyHolder;
+import com.artillect.voltaics.power.IEnergyProducer;
+import com.artillect.voltaics.power.grid.ConduitNetwork;
+import com.artillect.voltaics.power.grid.ConduitNetworkManager;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.play.server.SPacketUpdateTileEntity;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
-import net.minecraft.util.ITickable;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.IBlockAccess;
-import net.minecraftforge.common.capabilities.Capability;
 
-public class TileEntityLowVoltageConduit extends TileEntity implements ITickable {
-	private BaseEnergyContainer container;
+public class TileEntityLowVoltageConduit extends TileEntityBase {
+	public static final long CAPACITY = 250;
+	private static final CapabilityDispatch CAPABILITIES = new CapabilityDispatch()
+			.add(EnergyCapabilities.CAPABILITY_PRODUCER)
+			.add(EnergyCapabilities.CAPABILITY_HOLDER);
+	
+	//only used while the conduit is not part of a network, the network holds the power otherwise
+	private long power;
+	private ConduitNetwork network;
+	private int node = -1;
+	private final EnergyHandler energy = new EnergyHandler();
 	
 	public TileEntityLowVoltageConduit() {
-		this.container = new BaseEnergyContainer(0, 250, 50, 50);
+		setCapabilities(CAPABILITIES, energy, energy);
 	}
 	
 	public static enum EnumConduitConnection{
@@ -38,14 +48,12 @@ public class TileEntityLowVoltageConduit extends TileEntity implements ITickable
 		return EnumConduitConnection.NONE;
 	}
 	
-	public EnumConduitConnection getConnection(IBlockAccess world, BlockPos pos, EnumFacing side){
-		if (world.getTileEntity(pos) instanceof TileEntityLowVoltageConduit){
+	public EnumConduitConnection getConnection(EnumFacing side){
+		if (neighbors.getTile(side) instanceof TileEntityLowVoltageConduit){
 			return EnumConduitConnection.CONDUIT;
 		}
-		else if (world.getTileEntity(pos) != null){
-			if (world.getTileEntity(pos).hasCapability(EnergyCapabilities.CAPABILITY_HOLDER, side)){
-				return EnumConduitConnection.BLOCK;
-			}
+		else if (neighbors.getHolder(side) != null){
+			return EnumConduitConnection.BLOCK;
 		}
 		return EnumConduitConnection.NONE;
 	}
@@ -61,7 +69,7 @@ public class TileEntityLowVoltageConduit extends TileEntity implements ITickable
 		compound.setInteger("south", south.ordinal());
 		compound.setInteger("west", west.ordinal());
 		compound.setInteger("east", east.ordinal());
-        compound.setTag("JouleContainer", this.container.serializeNBT());
+		compound.setLong("JoulePower", network != null ? network.getShare(this) : power);
         return super.writeToNBT(compound);
 	}
 	@Override
@@ -73,15 +81,127 @@ public class TileEntityLowVoltageConduit extends TileEntity implements ITickable
 		south = connectionFromInt(compound.getInteger("south"));
 		west = connectionFromInt(compound.getInteger("west"));
 		east = connectionFromInt(compound.getInteger("east"));
-        this.container = new BaseEnergyContainer(compound.getCompoundTag("JouleContainer"));
+		//older saves kept the power in a full container compound
+		NBTTagCompound legacy = compound.getCompoundTag("JouleContainer");
+		power = Math.max(0, Math.min(CAPACITY, compound.hasKey("JoulePower") ? compound.getLong("JoulePower") : legacy.getLong("JoulePower")));
+	}
+	public void updateNeighbors(){
+		EnumConduitConnection oldUp = up, oldDown = down, oldNorth = north, oldSouth = south, oldWest = west, oldEast = east;
+		up = getConnection(EnumFacing.UP);
+		down = getConnection(EnumFacing.DOWN);
+		north = getConnection(EnumFacing.NORTH);
+		south = getConnection(EnumFacing.SOUTH);
+		west = getConnection(EnumFacing.WEST);
+		east = getConnection(EnumFacing.EAST);
+		//only rescan the network's endpoints if a machine next to us actually came or went
+		if (neighbors.pollEndpointsChanged() && network != null){
+			network.markEndpointsDirty();
+		}
+		if (up != oldUp || down != oldDown || north != oldNorth || south != oldSouth || west != oldWest || east != oldEast){
+			//the client renders from these fields, so send them along whenever they change
+			getWorld().markChunkDirty(getPos(), this);
+			sync();
+		}
+	}
+	
+	private int packConnections(){
+		return up.ordinal() | down.ordinal() << 2 | north.ordinal() << 4 | south.ordinal() << 6 | west.ordinal() << 8 | east.ordinal() << 10;
 	}
-	public void updateNeighbors(IBlockAccess world){
-		up = getConnection(world,getPos().up(),EnumFacing.DOWN);
-		down = getConnection(world,getPos().down(),EnumFacing.UP);
-		north = getConnection(world,getPos().north(),EnumFacing.NORTH);
-		south = getConnection(world,getPos().south(),EnumFacing.SOUTH);
-		west = getConnection(world,getPos().west(),EnumFacing.WEST);
-		east = getConnection(world,getPos().east(),EnumFacing.EAST);
+	
+	private void unpackConnections(int packed){
+		up = connectionFromInt(packed & 3);
+		down = connectionFromInt(packed >> 2 & 3);
+		north = connectionFromInt(packed >> 4 & 3);
+		south = connectionFromInt(packed >> 6 & 3);
+		west = connectionFromInt(packed >> 8 & 3);
+		east = connectionFromInt(packed >> 10 & 3);
+	}
+	
+	@Override
+	protected int getSyncFields(){
+		return 1 << SYNC_CONNECTIONS | 1 << SYNC_POWER;
+	}
+	
+	@Override
+	protected long getSyncValue(int field){
+		switch (field){
+		case SYNC_CONNECTIONS:
+			return packConnections();
+		case SYNC_POWER:
+			//the client has no network, so send this conduit's share like the save does
+			return network != null ? network.getShare(this) : power;
+		}
+		return 0;
+	}
+	
+	@Override
+	protected void setSyncValue(int field, long value){
+		switch (field){
+		case SYNC_CONNECTIONS:
+			unpackConnections((int) value);
+			getWorld().markBlockRangeForRenderUpdate(getPos(), getPos());
+			break;
+		case SYNC_POWER:
+			power = value;
+			break;
+		}
+	}
+	
+	@Override
+	public void onNeighborChanged(BlockPos neighbor){
+		super.onNeighborChanged(neighbor);
+		if (!getWorld().isRemote){
+			updateNeighbors();
+		}
+	}
+	
+	public long getPower(){
+		return power;
+	}
+	
+	public void setPower(long power){
+		this.power = power;
+	}
+	
+	public long getCapacity(){
+		return CAPACITY;
+	}
+	
+	public ConduitNetwork getNetwork(){
+		return network;
+	}
+	
+	public int getNode(){
+		return node;
+	}
+	
+	public void setNetwork(ConduitNetwork network, int node){
+		this.network = network;
+		this.node = node;
+	}
+	
+	@Override
+	public void onLoad(){
+		super.onLoad();
+		if (!getWorld().isRemote){
+			ConduitNetworkManager.get(getWorld()).addConduit(this);
+		}
+	}
+	
+	@Override
+	public void invalidate(){
+		super.invalidate();
+		if (getWorld() != null && !getWorld().isRemote){
+			ConduitNetworkManager.get(getWorld()).removeConduit(this);
+		}
+	}
+	
+	@Override
+	public void onChunkUnload(){
+		super.onChunkUnload();
+		if (!getWorld().isRemote){
+			ConduitNetworkManager.get(getWorld()).removeConduit(this);
+		}
 	}
 	
 	@Override
@@ -98,37 +218,41 @@ public class TileEntityLowVoltageConduit extends TileEntity implements ITickable
 	@Override
 	public void onDataPacket(NetworkManager net, SPacketUpdateTileEntity pkt) {
 		readFromNBT(pkt.getNbtCompound());
+		getWorld().markBlockRangeForRenderUpdate(getPos(), getPos());
 	}
 	
-    @Override
-    @SuppressWarnings("unchecked")
-    public <T> T getCapability (Capability<T> capability, EnumFacing facing) {
- 
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_PRODUCER || capability == EnergyCapabilities.CAPABILITY_HOLDER)
-            return (T) this.container;
+    /**
+     * The capability handed out to neighbors. It holds no state of its own and always forwards
+     * to the network when the conduit is part of one, so neighbors can keep hold of it while
+     * the conduit joins and leaves networks. Conduits do not accept power pushed into them, the
+     * network pulls it from the producers it touches instead.
+     */
+    private class EnergyHandler implements IEnergyProducer, IEnergyHolder {
+        
+        @Override
+        public long getStoredPower () {
             
-        return super.getCapability(capability, facing);
-    }
-	
-    @Override
-    public boolean hasCapability (Capability<?> capability, EnumFacing facing) {
+            return network != null ? network.getStoredPower() : TileEntityLowVoltageConduit.this.power;
+        }
         
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_PRODUCER || capability == EnergyCapabilities.CAPABILITY_HOLDER)
-            return true;
+        @Override
+        public long getCapacity () {
             
-        return super.hasCapability(capability, facing);
+            return network != null ? network.getCapacity() : CAPACITY;
+        }
+        
+        @Override
+        public long takePower (long power, boolean simulated) {
+            
+            if (network != null)
+                return network.takePower(power, simulated);
+            
+            final long removedPower = Math.min(TileEntityLowVoltageConduit.this.power, power);
+            
+            if (!simulated)
+                TileEntityLowVoltageConduit.this.power -= removedPower;
+                
+            return removedPower;
+        }
     }
-    
-	@Override
-	public void update() {
-		for (EnumFacing side : EnumFacing.values()) {
-			final TileEntity tile = this.getWorld().getTileEntity(pos.offset(side));
-			if (tile != null && tile instanceof TileEntityLowVoltageConduit) {
-				long takerStored = tile.getCapability(EnergyCapabilities.CAPABILITY_HOLDER, side).getStoredPower();
-				if (this.container.getStoredPower() > takerStored) {
-					this.container.takePower(tile.getCapability(EnergyCapabilities.CAPABILITY_CONSUMER, side).givePower(Math.min(50, (this.container.getStoredPower() + takerStored)/2 - takerStored), false), false);
-				}
-			}
-		}
-	}
 }
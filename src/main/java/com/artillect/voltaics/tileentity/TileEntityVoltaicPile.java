@@ -1,39 +1,41 @@
 package com.artillect.voltaics.tileentity;
 
-import java.util.ArrayList;
-
-import javax.annotation.Nullable;
-import net.minecraft.block.state.IBlockState;
-import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.network.NetworkManager;
-import net.minecraft.network.play.server.SPacketUpdateTileEntity;
-import net.minecraft.tileentity.TileEntity;
-import net.minecraft.util.EnumFacing;
-import net.minecraft.util.EnumHand;
 import net.minecraft.util.ITickable;
-import net.minecraft.util.math.BlockPos;
-import net.minecraft.world.World;
-import net.minecraftforge.common.capabilities.Capability;
 
 import com.artillect.voltaics.capability.EnergyCapabilities;
+import com.artillect.voltaics.lib.CapabilityDispatch;
+import com.artillect.voltaics.lib.EnergyTransaction;
 import com.artillect.voltaics.lib.JouleUtils;
 import com.artillect.voltaics.power.implementation.BaseEnergyContainer;
-import com.artillect.voltaics.tileentity.TileEntityLowVoltageConduit.EnumConduitConnection;
 
-public class TileEntityVoltaicPile extends TileEntity implements ITickable {
+public class TileEntityVoltaicPile extends TileEntityBase implements ITickable {
+	private static final int IDLE_TICKS = 20;
+	private static final CapabilityDispatch CAPABILITIES = new CapabilityDispatch()
+			.add(EnergyCapabilities.CAPABILITY_CONSUMER)
+			.add(EnergyCapabilities.CAPABILITY_PRODUCER)
+			.add(EnergyCapabilities.CAPABILITY_HOLDER);
 	
 	private BaseEnergyContainer container;
+	private final EnergyTransaction transaction = new EnergyTransaction();
 	
 	public TileEntityVoltaicPile() {
-		this.container = new BaseEnergyContainer(20000, 20000, 50, 50);
+		this.container = new BaseEnergyContainer(20000, 20000, 50, 50) {
+			@Override
+			protected void onPowerChanged(long change){
+				//networks pulling power out should not keep the pile awake
+				if (change > 0){
+					wake();
+				}
+			}
+		};
+		setCapabilities(CAPABILITIES, container, container, container);
 	}
 	
 	@Override
 	public void readFromNBT(NBTTagCompound compound) {
 		super.readFromNBT(compound);
-		this.container = new BaseEnergyContainer(compound.getCompoundTag("JouleContainer"));
+		this.container.deserializeNBT(compound.getCompoundTag("JouleContainer"));
 	}
 	
 	@Override
@@ -46,27 +48,34 @@ public class TileEntityVoltaicPile extends TileEntity implements ITickable {
 		return writeToNBT(new NBTTagCompound());
 	}
 	
-    @Override
-    @SuppressWarnings("unchecked")
-    public <T> T getCapability (Capability<T> capability, EnumFacing facing) {
-
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_HOLDER || capability == EnergyCapabilities.CAPABILITY_PRODUCER)
-            return (T) this.container;
-            
-        return super.getCapability(capability, facing);
-    }
-    
-    @Override
-    public boolean hasCapability (Capability<?> capability, EnumFacing facing) {
-
-        if (capability == EnergyCapabilities.CAPABILITY_CONSUMER || capability == EnergyCapabilities.CAPABILITY_HOLDER || capability == EnergyCapabilities.CAPABILITY_PRODUCER)
-            return true;
-            
-        return super.hasCapability(capability, facing);
-    }
-
+	@Override
+	protected int getSyncFields(){
+		return 1 << SYNC_POWER;
+	}
+	
+	@Override
+	protected long getSyncValue(int field){
+		return this.container.getStoredPower();
+	}
+	
+	@Override
+	protected void setSyncValue(int field, long value){
+		this.container.setStoredPower(value);
+	}
+	
 	@Override
 	public void update() {
-		this.container.takePower(JouleUtils.distributePowerToAllFaces(this.getWorld(), pos, 50, false), false); //Replace 20 with JouleUtils.distributePowerToAllFaces(this.getWorld(), pos, 50, false)
+		if (this.container.getStoredPower() == 0){
+			sleep(0);
+			return;
+		}
+		//reserve our output and the neighbors' space together, so nothing can change in between
+		long budget = this.transaction.getReserved(this.transaction.reserveTake(this.container, 50));
+		JouleUtils.distributePowerFairly(this.neighbors, this.transaction, budget);
+		long given = this.transaction.commit();
+		if (given == 0){
+			//consumers can drain without telling us, so check back now and then
+			sleep(IDLE_TICKS);
+		}
 	}
 }
\ No newline at end of file